@@ -0,0 +1,113 @@
+package juniter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import juniter.utils.Base58;
+import juniter.utils.CryptoUtils;
+import juniter.utils.PubKeyCache;
+
+/**
+ * The pubkeys of the sample blocks, issuers and certifications, through the
+ * {@link LegacyBase58} codec, the current {@link Base58} and the
+ * {@link PubKeyCache}. <br>
+ *
+ * Each op goes through the whole list, the score is to be read per key
+ *
+ * @author ben
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base58Benchmark {
+
+	private static final String[] RESOURCES = { "0", "1437", "17500", "33396", "102093", "127128" };
+
+	private final List<String> pubkeys = new ArrayList<>();
+
+	private final List<byte[]> keys = new ArrayList<>();
+
+	private PubKeyCache cache;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var blocks = new ArrayList<byte[]>(Samples.chain());
+		for (var name : RESOURCES) {
+			blocks.add(Samples.resource(name));
+		}
+
+		var distinct = new LinkedHashSet<String>();
+		for (var json : blocks) {
+			var block = Samples.parse(json);
+			distinct.add(block.getIssuer());
+			for (var cert : block.getCertifications()) {
+				var fields = cert.split(":");
+				distinct.add(fields[0]);
+				distinct.add(fields[1]);
+			}
+		}
+		pubkeys.addAll(distinct);
+		pubkeys.forEach(pk -> keys.add(CryptoUtils.decodeBase58(pk)));
+
+		cache = new PubKeyCache(pubkeys.size());
+		pubkeys.forEach(cache::decode);
+	}
+
+	@Benchmark
+	public void legacyDecode(Blackhole bh) throws Exception {
+		for (var pubkey : pubkeys) {
+			bh.consume(LegacyBase58.decode(pubkey));
+		}
+	}
+
+	@Benchmark
+	public void decode(Blackhole bh) throws Exception {
+		for (var pubkey : pubkeys) {
+			bh.consume(Base58.decode(pubkey));
+		}
+	}
+
+	@Benchmark
+	public void legacyEncode(Blackhole bh) {
+		for (var key : keys) {
+			bh.consume(LegacyBase58.encode(key));
+		}
+	}
+
+	@Benchmark
+	public void encode(Blackhole bh) {
+		for (var key : keys) {
+			bh.consume(Base58.encode(key));
+		}
+	}
+
+	/**
+	 * every key already cached, as when the same members sign block after block
+	 */
+	@Benchmark
+	public void cachedDecode(Blackhole bh) {
+		for (var pubkey : pubkeys) {
+			bh.consume(cache.decode(pubkey));
+		}
+	}
+
+}
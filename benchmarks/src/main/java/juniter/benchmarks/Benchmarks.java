@@ -0,0 +1,33 @@
+package juniter.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar, the JMH command line with the gc profiler
+ * always on so that every score comes with its allocation rate
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar                  # everything
+ * java -jar target/benchmarks.jar BlockBenchmark.raw -p block=127128
+ * java -jar target/benchmarks.jar -rf json -rff before.json
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		var options = new OptionsBuilder() //
+				.parent(new CommandLineOptions(args)) //
+				.addProfiler(GCProfiler.class) //
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,111 @@
+package juniter.benchmarks;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import juniter.model.Block;
+import juniter.model.persistence.tx.Transaction;
+import juniter.utils.RawWriter;
+
+/**
+ * JSON → Block, Block → raw document, raw document → hash, on each sample block
+ *
+ * @author ben
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockBenchmark {
+
+	/**
+	 * 0: the genesis and its identities, 127128: 9 transactions ...
+	 */
+	@Param({ "0", "1437", "17500", "33396", "102093", "127128" })
+	public String block;
+
+	private byte[] json;
+
+	private Block parsed;
+
+	private String raw;
+
+	private List<Transaction> transactions;
+
+	private MessageDigest sha256;
+
+	@Setup(Level.Trial)
+	public void setup() throws NoSuchAlgorithmException {
+		sha256 = MessageDigest.getInstance("SHA-256");
+		json = Samples.resource(block);
+		parsed = Samples.parse(json);
+		raw = parsed.getRaw();
+		transactions = parsed.getTransactions();
+	}
+
+	@Benchmark
+	public Block parse() throws IOException {
+		return Samples.MAPPER.readValue(json, Block.class);
+	}
+
+	@Benchmark
+	public String raw() {
+		return parsed.getRaw();
+	}
+
+	@Benchmark
+	public StringBuilder rawWriter() {
+		return RawWriter.get().block(parsed).builder();
+	}
+
+	@Benchmark
+	public void transactionsRaw(Blackhole bh) {
+		for (var tx : transactions) {
+			bh.consume(tx.toRaw());
+		}
+	}
+
+	@Benchmark
+	public String hash() {
+		return DigestUtils.sha256Hex(raw).toUpperCase();
+	}
+
+	/**
+	 * The raw document straight from the writer's buffer to the digest
+	 */
+	@Benchmark
+	public byte[] hashStreamed() {
+		return RawWriter.get().block(parsed).digest(sha256);
+	}
+
+	/**
+	 * What receiving a block costs before any rule is checked
+	 */
+	@Benchmark
+	public String parseRawHash() throws IOException {
+		var b = Samples.MAPPER.readValue(json, Block.class);
+		return DigestUtils.sha256Hex(b.getRaw()).toUpperCase();
+	}
+
+}
@@ -0,0 +1,73 @@
+package juniter.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import juniter.model.Block;
+import juniter.utils.Validator;
+
+/**
+ * The first blocks of the chain, one after the other, as a sync would see them
+ *
+ * @author ben
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+	private List<byte[]> chain;
+
+	private List<Block> blocks;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		chain = Samples.chain();
+		blocks = chain.stream().map(Samples::parse).collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public void parse(Blackhole bh) {
+		for (var json : chain) {
+			bh.consume(Samples.parse(json));
+		}
+	}
+
+	@Benchmark
+	public void parseRawHash(Blackhole bh) {
+		for (var json : chain) {
+			bh.consume(DigestUtils.sha256Hex(Samples.parse(json).getRaw()).toUpperCase());
+		}
+	}
+
+	/**
+	 * inner_hash and hash of each block, as the sync validation computes them
+	 */
+	@Benchmark
+	public void validateHashes(Blackhole bh) {
+		for (var block : blocks) {
+			bh.consume(Validator.innerHash(block));
+			bh.consume(Validator.hash(block));
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package juniter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import juniter.model.net.EndPoint;
+import juniter.model.persistence.tx.TxInput;
+import juniter.model.persistence.tx.TxOutput;
+import juniter.model.persistence.tx.TxUnlock;
+import juniter.model.persistence.wot.Certification;
+
+/**
+ * The compact documents parsed by the model setters, collected from every
+ * sample block. <br>
+ *
+ * Each op parses the whole list, the score is to be read per document
+ *
+ * @author ben
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentBenchmark {
+
+	private static final String[] RESOURCES = { "0", "1437", "17500", "33396", "102093", "127128" };
+
+	/**
+	 * as announced by the g1 peers
+	 */
+	private static final List<String> ENDPOINTS = List.of( //
+			"BASIC_MERKLED_API g1.duniter.org 80", //
+			"BMAS g1.duniter.org 443", //
+			"BASIC_MERKLED_API g1.duniter.fr 81.81.81.81 80", //
+			"BMAS g1.duniter.fr 443 /bma", //
+			"WS2P 3eaab4c7 g1.duniter.org 443 /ws2p", //
+			"WS2P 5b53b9a5 g1-monit.librelois.fr 443 ws2p", //
+			"WS2PTOR 1be86653 3k2zovlpihbt3j3g.onion 20901", //
+			"BASIC_MERKLED_API 2a01:e0a:1bc:1a0::1 10901", //
+			"ES_CORE_API g1.data.duniter.fr 443", //
+			"MONIT_API g1-monit.librelois.fr 443");
+
+	private final List<String> inputs = new ArrayList<>();
+	private final List<String> outputs = new ArrayList<>();
+	private final List<String> unlocks = new ArrayList<>();
+	private final List<String> certifications = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var blocks = new ArrayList<byte[]>(Samples.chain());
+		for (var name : RESOURCES) {
+			blocks.add(Samples.resource(name));
+		}
+
+		for (var json : blocks) {
+			var block = Samples.parse(json);
+			certifications.addAll(block.getCertifications());
+			for (var tx : block.getTransactions()) {
+				inputs.addAll(tx.getInputs());
+				outputs.addAll(tx.getOutputs());
+				unlocks.addAll(tx.getUnlocks());
+			}
+		}
+	}
+
+	@Benchmark
+	public void txInput(Blackhole bh) {
+		for (var input : inputs) {
+			bh.consume(new TxInput(input));
+		}
+	}
+
+	@Benchmark
+	public void txOutput(Blackhole bh) {
+		for (var output : outputs) {
+			bh.consume(new TxOutput(output));
+		}
+	}
+
+	@Benchmark
+	public void txUnlock(Blackhole bh) {
+		for (var unlock : unlocks) {
+			bh.consume(new TxUnlock(unlock));
+		}
+	}
+
+	@Benchmark
+	public void certification(Blackhole bh) {
+		for (var certif : certifications) {
+			bh.consume(new Certification(certif));
+		}
+	}
+
+	@Benchmark
+	public void endpoint(Blackhole bh) {
+		for (var endpoint : ENDPOINTS) {
+			bh.consume(new EndPoint(endpoint));
+		}
+	}
+
+}
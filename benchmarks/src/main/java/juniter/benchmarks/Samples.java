@@ -0,0 +1,81 @@
+package juniter.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+
+/**
+ * The real blocks the suites run on
+ *
+ * <pre>
+ *  - blocks/*.json from the juniter jar, ie: src/main/resources/blocks
+ *  - the first blocks of the chain from -Djuniter.benchmarks.blocks, ../data/blocks by default
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+public class Samples {
+
+	public static final String DATA_BLOCKS = System.getProperty("juniter.benchmarks.blocks", "../data/blocks");
+
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * @param name ie: 0, 127128
+	 * @return the json of blocks/name.json
+	 */
+	public static byte[] resource(String name) {
+		try (var in = Samples.class.getClassLoader().getResourceAsStream("blocks/" + name + ".json")) {
+			if (in == null)
+				throw new IllegalArgumentException("No block resource " + name);
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the json of every block in {@link #DATA_BLOCKS}, sorted by name
+	 */
+	public static List<byte[]> chain() {
+		var dir = Paths.get(DATA_BLOCKS);
+		if (!Files.isDirectory(dir))
+			throw new IllegalStateException("No block directory " + dir.toAbsolutePath()
+					+ ", run from benchmarks/ or set -Djuniter.benchmarks.blocks");
+
+		try (var files = Files.list(dir)) {
+			return files.filter(p -> p.toString().endsWith(".json")) //
+					.sorted() //
+					.map(Samples::read) //
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static Block parse(byte[] json) {
+		try {
+			return MAPPER.readValue(json, Block.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] read(Path file) {
+		try {
+			return Files.readAllBytes(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -1,27 +1,116 @@
 package juniter.conf;
 
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * The outbound HTTP clients, shared by everything talking to other nodes
+ *
+ * <pre>
+ *  - a blocking client behind the {@link RestTemplate} bean, a non blocking one behind {@link juniter.service.PeerClient}
+ *  - both pool their connections : juniter.http.maxTotal overall, juniter.http.perHost per node, kept alive juniter.http.keepAlive seconds unless the node says otherwise
+ *  - connect and read timeouts from juniter.http.connectTimeout and juniter.http.readTimeout
+ *  - the non blocking one runs on juniter.http.ioThreads threads, 0 for one per core
+ * </pre>
+ *
+ * @author ben
+ *
+ */
 @Configuration
 public class HTTPConfiguration {
 
+	@Value("${juniter.http.maxTotal:512}")
+	private int maxTotal;
+
+	@Value("${juniter.http.perHost:32}")
+	private int perHost;
+
+	@Value("${juniter.http.connectTimeout:5000}")
+	private int connectTimeout;
+
+	@Value("${juniter.http.readTimeout:15000}")
+	private int readTimeout;
+
+	@Value("${juniter.http.keepAlive:30}")
+	private int keepAliveSeconds;
+
+	@Value("${juniter.http.ioThreads:0}")
+	private int ioThreads;
+
 	@Bean
 	public RestTemplate restTemplate() {
-		return new RestTemplate();
+		return new RestTemplate(clientHttpRequestFactory());
+	}
+
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient httpClient() {
+		var pool = new PoolingHttpClientConnectionManager(keepAliveSeconds, TimeUnit.SECONDS);
+		pool.setMaxTotal(maxTotal);
+		pool.setDefaultMaxPerRoute(perHost);
+		pool.setValidateAfterInactivity(2000);
+
+		return HttpClients.custom() //
+				.setConnectionManager(pool) //
+				.setKeepAliveStrategy((response, context) -> keepAlive(
+						DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context))) //
+				.setDefaultRequestConfig(requestConfig()) //
+				.evictIdleConnections(keepAliveSeconds, TimeUnit.SECONDS) //
+				.build();
+	}
+
+	@Bean(destroyMethod = "close")
+	public CloseableHttpAsyncClient httpAsyncClient() {
+		var reactor = IOReactorConfig.custom() //
+				.setIoThreadCount(ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors()) //
+				.setConnectTimeout(connectTimeout) //
+				.setSoTimeout(readTimeout) //
+				.setSoKeepAlive(true) //
+				.setTcpNoDelay(true) //
+				.build();
+
+		var client = HttpAsyncClients.custom() //
+				.setDefaultIOReactorConfig(reactor) //
+				.setMaxConnTotal(maxTotal) //
+				.setMaxConnPerRoute(perHost) //
+				.setKeepAliveStrategy((response, context) -> keepAlive(
+						DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context))) //
+				.setDefaultRequestConfig(requestConfig()) //
+				.build();
+		client.start();
+		return client;
 	}
 
 	private ClientHttpRequestFactory clientHttpRequestFactory() {
-		HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory();
-		factory.setReadTimeout(15000);
-		factory.setConnectTimeout(15000);
-		//factory.setHttpClient(httpClient);
+		return new HttpComponentsClientHttpRequestFactory(httpClient());
+	}
+
+	private RequestConfig requestConfig() {
+		return RequestConfig.custom() //
+				.setConnectTimeout(connectTimeout) //
+				.setConnectionRequestTimeout(connectTimeout) //
+				.setSocketTimeout(readTimeout) //
+				.build();
+	}
 
-		
-		return factory;
+	/**
+	 * @param announced by the node, negative if it did not say
+	 */
+	private long keepAlive(long announced) {
+		return announced < 0 ? TimeUnit.SECONDS.toMillis(keepAliveSeconds) : announced;
 	}
 
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package juniter.model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -15,8 +17,10 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -25,8 +29,13 @@ import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.springframework.data.domain.DomainEvents;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import juniter.model.event.BlockSavedEvent;
 import juniter.model.persistence.Hash;
 import juniter.model.persistence.PubKey;
 import juniter.model.persistence.Signature;
@@ -39,6 +48,7 @@ import juniter.model.persistence.wot.Joiner;
 import juniter.model.persistence.wot.Leaver;
 import juniter.model.persistence.wot.Revoked;
 import juniter.utils.Constants;
+import juniter.utils.RawWriter;
 
 /**
  * The top / main class of the model is the Block class 
@@ -59,14 +69,16 @@ import juniter.utils.Constants;
  *
  */
 @Entity
-@Table(name = "block", schema = "public")
+@Table(name = "block", schema = "public", indexes = { @Index(name = "idx_block_number", columnList = "number"),
+		@Index(name = "idx_block_hash", columnList = "block_hash") })
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Block implements Serializable {
 
 	private static final long serialVersionUID = -4464417074968456696L;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "block_seq")
+	@SequenceGenerator(name = "block_seq", sequenceName = "block_seq", allocationSize = Constants.Defaults.ID_ALLOCATION_SIZE)
 	private Long id;
 
 	private Short version;
@@ -77,7 +89,7 @@ public class Block implements Serializable {
 
 	private Integer powMin;
 
-	@Temporal(TemporalType.TIME)
+	@Temporal(TemporalType.TIMESTAMP)
 	private Date time;
 
 	@Temporal(TemporalType.TIMESTAMP)
@@ -135,40 +147,48 @@ public class Block implements Serializable {
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_identities", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Identity> identities = new ArrayList<Identity>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_joiners", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Joiner> joiners = new ArrayList<Joiner>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_actives", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Active> actives = new ArrayList<Active>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_leavers", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Leaver> leavers = new ArrayList<Leaver>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_revoked", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Revoked> revoked = new ArrayList<Revoked>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "wot_excluded", joinColumns = @JoinColumn(name = "container_block"))
 	private List<Excluded> excluded = new ArrayList<Excluded>();
 
 	@Valid
 	@OneToMany(cascade = CascadeType.ALL)
+	@Fetch(FetchMode.SUBSELECT)
 	public List<Certification> certifications = new ArrayList<Certification>();
 
 	@Valid
 	@OneToMany(cascade = CascadeType.ALL)
+	@Fetch(FetchMode.SUBSELECT)
 	private List<Transaction> transactions = new ArrayList<Transaction>();
 
 	/**
@@ -181,6 +201,17 @@ public class Block implements Serializable {
 		return id;
 	}
 
+	/**
+	 * Published by the repository on every save, this is the hook the in-memory
+	 * indexes (chain head, ...) use to stay in sync with the database
+	 * 
+	 * @return the events to publish
+	 */
+	@DomainEvents
+	Collection<Object> domainEvents() {
+		return Collections.singletonList(new BlockSavedEvent(this));
+	}
+
 	/**
 	 * @return the hash
 	 */
@@ -199,32 +230,74 @@ public class Block implements Serializable {
 	}
 
 	/**
-	 * Method returning block as a Raw format
+	 * The raw document as BMA serves it : the inner part followed by the signed
+	 * part, without the signature
 	 * 
-	 * @return
+	 * @return the raw block
 	 */
 	public String getRaw() {
-		return "Version: " + version + "\nType: Block" + "\nCurrency: " + currency + "\nNumber: " + number
-				+ "\nPoWMin: " + powMin + "\nTime: " + getTime() + "\nMedianTime: " + getMedianTime() + "\nUnitBase: "
-				+ unitbase + "\nIssuer: " + issuer + "\nIssuersFrame: " + issuersFrame + "\nIssuersFrameVar: "
-				+ issuersFrameVar + "\nDifferentIssuersCount: " + issuersCount + "\nPreviousHash: " + previousHash
-				+ "\nPreviousIssuer: " + previousIssuer + "\nMembersCount: " + membersCount + "\nIdentities:\n"
-				+ identities.stream().map(Identity::toRaw).collect(Collectors.joining("\n"))
-				+ (identities.size() > 0 ? "\n" : "") + "Joiners:\n"
-				+ joiners.stream().map(Joiner::toRaw).collect(Collectors.joining("\n"))
-				+ (joiners.size() > 0 ? "\n" : "") + "Actives:\n"
-				+ actives.stream().map(Active::toRaw).collect(Collectors.joining("\n"))
-				+ (actives.size() > 0 ? "\n" : "") + "Leavers:\n"
-				+ leavers.stream().map(Leaver::toRaw).collect(Collectors.joining("\n"))
-				+ (leavers.size() > 0 ? "\n" : "") + "Revoked:\n"
-				+ revoked.stream().map(Revoked::toRaw).collect(Collectors.joining("\n"))
-				+ (revoked.size() > 0 ? "\n" : "") + "Excluded:\n"
-				+ excluded.stream().map(Excluded::toRaw).collect(Collectors.joining("\n"))
-				+ (excluded.size() > 0 ? "\n" : "") + "Certifications:\n"
-				+ certifications.stream().map(Certification::toRaw).collect(Collectors.joining("\n"))
-				+ (certifications.size() > 0 ? "\n" : "") + "Transactions:\n"
-				+ transactions.stream().map(Transaction::toRaw).collect(Collectors.joining("\n"))
-				+ (transactions.size() > 0 ? "\n" : "") + "InnerHash: " + inner_hash + "\nNonce: " + nonce + "\n";
+		return RawWriter.get().block(this).toString();
+	}
+
+	/**
+	 * Appends the raw document to a reusable buffer, see {@link RawWriter}
+	 * 
+	 * @return raw
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return toSignedRaw(toInnerRaw(raw));
+	}
+
+	/**
+	 * Appends the part hashed into inner_hash, everything up to "InnerHash: ".
+	 * The optional lines only appear when they have a value, ie: Parameters on
+	 * the genesis, UniversalDividend on dividend blocks
+	 * 
+	 * @return raw
+	 */
+	public StringBuilder toInnerRaw(StringBuilder raw) {
+		raw.append("Version: ").append(version).append("\nType: Block\nCurrency: ").append(currency) //
+				.append("\nNumber: ").append(number).append("\nPoWMin: ").append(powMin) //
+				.append("\nTime: ").append(time.getTime()).append("\nMedianTime: ").append(medianTime.getTime()) //
+				.append('\n');
+		if (dividend != null) {
+			raw.append("UniversalDividend: ").append(dividend).append('\n');
+		}
+		raw.append("UnitBase: ").append(unitbase).append("\nIssuer: ").append(getIssuer()) //
+				.append("\nIssuersFrame: ").append(issuersFrame).append("\nIssuersFrameVar: ").append(issuersFrameVar) //
+				.append("\nDifferentIssuersCount: ").append(issuersCount).append('\n');
+		if (getPreviousHash() != null) {
+			raw.append("PreviousHash: ").append(getPreviousHash()).append('\n');
+		}
+		if (getPreviousIssuer() != null) {
+			raw.append("PreviousIssuer: ").append(getPreviousIssuer()).append('\n');
+		}
+		if (parameters != null && !parameters.isEmpty()) {
+			raw.append("Parameters: ").append(parameters).append('\n');
+		}
+		raw.append("MembersCount: ").append(membersCount).append('\n');
+		RawWriter.lines(raw.append("Identities:\n"), identities, Identity::toRaw);
+		RawWriter.lines(raw.append("Joiners:\n"), joiners, Joiner::toRaw);
+		RawWriter.lines(raw.append("Actives:\n"), actives, Active::toRaw);
+		RawWriter.lines(raw.append("Leavers:\n"), leavers, Leaver::toRaw);
+		RawWriter.lines(raw.append("Revoked:\n"), revoked, Revoked::toRaw);
+		RawWriter.lines(raw.append("Excluded:\n"), excluded, Excluded::toRaw);
+		RawWriter.lines(raw.append("Certifications:\n"), certifications, Certification::toRaw);
+		raw.append("Transactions:\n");
+		for (var tx : transactions) {
+			tx.toRaw(raw);
+		}
+		return raw;
+	}
+
+	/**
+	 * Appends the part signed by the issuer, its hash with the signature is the
+	 * block hash
+	 * 
+	 * @return raw
+	 */
+	public StringBuilder toSignedRaw(StringBuilder raw) {
+		return raw.append("InnerHash: ").append(getInner_hash()).append("\nNonce: ").append(nonce).append('\n');
 	}
 
 	/**
@@ -411,6 +484,10 @@ public class Block implements Serializable {
 		return identities.stream().map(id -> id.getIdentity()).collect(Collectors.toList());
 	}
 
+	public List<Identity> identities() {
+		return identities;
+	}
+
 	/**
 	 * @return the joiners
 	 */
@@ -418,6 +495,10 @@ public class Block implements Serializable {
 		return joiners.stream().map(Joiner::toString).collect(Collectors.toList());
 	}
 
+	public List<Joiner> joiners() {
+		return joiners;
+	}
+
 	/**
 	 * @return the active
 	 */
@@ -425,6 +506,10 @@ public class Block implements Serializable {
 		return actives.stream().map(Active::toString).collect(Collectors.toList());
 	}
 
+	public List<Active> actives() {
+		return actives;
+	}
+
 	/**
 	 * @return the leavers
 	 */
@@ -432,6 +517,10 @@ public class Block implements Serializable {
 		return leavers.stream().map(Leaver::toString).collect(Collectors.toList());
 	}
 
+	public List<Leaver> leavers() {
+		return leavers;
+	}
+
 	/**
 	 * @return the revoked
 	 */
@@ -439,6 +528,10 @@ public class Block implements Serializable {
 		return revoked.stream().map(Revoked::toString).collect(Collectors.toList());
 	}
 
+	public List<Revoked> revoked() {
+		return revoked;
+	}
+
 	/**
 	 * @return the excluded
 	 */
@@ -446,6 +539,10 @@ public class Block implements Serializable {
 		return excluded.stream().map(Excluded::toString).collect(Collectors.toList());
 	}
 
+	public List<Excluded> excluded() {
+		return excluded;
+	}
+
 	/**
 	 * @return the certifications
 	 */
@@ -453,4 +550,8 @@ public class Block implements Serializable {
 		return certifications.stream().map(c -> c.getCertif()).collect(Collectors.toList());
 	}
 
+	public List<Certification> certifications() {
+		return certifications;
+	}
+
 }
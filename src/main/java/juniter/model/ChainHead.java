@@ -0,0 +1,46 @@
+package juniter.model;
+
+import java.io.Serializable;
+
+/**
+ * Immutable snapshot of the top of the locally stored chain : number + hash
+ * 
+ * @author ben
+ *
+ */
+public final class ChainHead implements Serializable {
+
+	private static final long serialVersionUID = 4188231375290561137L;
+
+	private final int number;
+
+	private final String hash;
+
+	public ChainHead(int number, String hash) {
+		this.number = number;
+		this.hash = hash;
+	}
+
+	public static ChainHead of(Block block) {
+		return new ChainHead(block.getNumber(), block.getHash());
+	}
+
+	/**
+	 * @return the number
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the hash
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return number + "-" + hash;
+	}
+}
@@ -0,0 +1,108 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+import java.util.List;
+
+import juniter.model.persistence.tx.TxType;
+
+/**
+ * The answer of /tx/sources/{pubkey} : what the key can spend
+ *
+ * @author ben
+ *
+ */
+public class Sources implements Serializable {
+
+	private static final long serialVersionUID = 7419652830451102277L;
+
+	private final String currency;
+	private final String pubkey;
+	private final List<Source> sources;
+
+	public Sources(String currency, String pubkey, List<Source> sources) {
+		this.currency = currency;
+		this.pubkey = pubkey;
+		this.sources = sources;
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	public String getPubkey() {
+		return pubkey;
+	}
+
+	public List<Source> getSources() {
+		return sources;
+	}
+
+	/**
+	 * An unspent source
+	 *
+	 * <pre>
+	 *  - D : a dividend, identified by the member's pubkey and the block number as noffset
+	 *  - T : a transaction output, identified by the tx hash and the output index as noffset
+	 * </pre>
+	 */
+	public static class Source implements Serializable {
+
+		private static final long serialVersionUID = -3072310839471652918L;
+
+		private final TxType type;
+		private final int noffset;
+		private final Object identifier;
+		private final int amount;
+		private final int base;
+		private final String conditions;
+
+		/**
+		 * @param identifier a Key or a Hash256, written as its String form
+		 */
+		public Source(TxType type, int noffset, Object identifier, int amount, int base, String conditions) {
+			this.type = type;
+			this.noffset = noffset;
+			this.identifier = identifier;
+			this.amount = amount;
+			this.base = base;
+			this.conditions = conditions;
+		}
+
+		public TxType getType() {
+			return type;
+		}
+
+		public int getNoffset() {
+			return noffset;
+		}
+
+		public String getIdentifier() {
+			return identifier.toString();
+		}
+
+		public int getAmount() {
+			return amount;
+		}
+
+		public int getBase() {
+			return base;
+		}
+
+		public String getConditions() {
+			return conditions;
+		}
+
+		/**
+		 * @return the Key or Hash256 itself, not a getter
+		 */
+		public Object identifier() {
+			return identifier;
+		}
+
+		@Override
+		public String toString() {
+			return type + ":" + identifier + ":" + noffset + "=" + amount + ":" + base + ":" + conditions;
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The answer of /wot/certifiers-of/{search} and /wot/certified-by/{search} :
+ * an identity and the other end of its living certifications
+ *
+ * @author ben
+ *
+ */
+public class WotCerts implements Serializable {
+
+	private static final long serialVersionUID = 1802655402217376454L;
+
+	private final String pubkey;
+	private final String uid;
+	private final boolean member;
+	private final String sigDate;
+	private final List<Cert> certifications;
+
+	public WotCerts(String pubkey, String uid, boolean member, String sigDate, List<Cert> certifications) {
+		this.pubkey = pubkey;
+		this.uid = uid;
+		this.member = member;
+		this.sigDate = sigDate;
+		this.certifications = certifications;
+	}
+
+	public String getPubkey() {
+		return pubkey;
+	}
+
+	public String getUid() {
+		return uid;
+	}
+
+	@JsonProperty("isMember")
+	public boolean isMember() {
+		return member;
+	}
+
+	public String getSigDate() {
+		return sigDate;
+	}
+
+	public List<Cert> getCertifications() {
+		return certifications;
+	}
+
+	/**
+	 * The certifier, or the certified, and where the certification was signed
+	 * and written
+	 */
+	public static class Cert implements Serializable {
+
+		private static final long serialVersionUID = -4870553174069327751L;
+
+		private final String pubkey;
+		private final String uid;
+		private final boolean member;
+		private final boolean wasMember;
+		private final int signedOn;
+		private final String sigDate;
+		private final int writtenOn;
+		private final String writtenHash;
+		private final String signature;
+
+		public Cert(String pubkey, String uid, boolean member, boolean wasMember, int signedOn, String sigDate,
+				int writtenOn, String writtenHash, String signature) {
+			this.pubkey = pubkey;
+			this.uid = uid;
+			this.member = member;
+			this.wasMember = wasMember;
+			this.signedOn = signedOn;
+			this.sigDate = sigDate;
+			this.writtenOn = writtenOn;
+			this.writtenHash = writtenHash;
+			this.signature = signature;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+
+		@JsonProperty("isMember")
+		public boolean isMember() {
+			return member;
+		}
+
+		@JsonProperty("wasMember")
+		public boolean wasMember() {
+			return wasMember;
+		}
+
+		@JsonProperty("cert_time")
+		public Map<String, Integer> getCertTime() {
+			return Map.of("block", signedOn);
+		}
+
+		public String getSigDate() {
+			return sigDate;
+		}
+
+		public Map<String, Object> getWritten() {
+			return writtenHash == null ? Map.of("number", writtenOn) : Map.of("number", writtenOn, "hash", writtenHash);
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+
+/**
+ * The answer of /wot/identity-of/{search} : a written identity
+ *
+ * @author ben
+ *
+ */
+public class WotIdentity implements Serializable {
+
+	private static final long serialVersionUID = 3327480361251372017L;
+
+	private final String pubkey;
+	private final String uid;
+	private final String sigDate;
+
+	/**
+	 * @param sigDate the block the identity was signed at, number-hash
+	 */
+	public WotIdentity(String pubkey, String uid, String sigDate) {
+		this.pubkey = pubkey;
+		this.uid = uid;
+		this.sigDate = sigDate;
+	}
+
+	public String getPubkey() {
+		return pubkey;
+	}
+
+	public String getUid() {
+		return uid;
+	}
+
+	public String getSigDate() {
+		return sigDate;
+	}
+
+}
@@ -0,0 +1,221 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The answer of /wot/lookup/{search} : the matching identities, who certified
+ * them and whom they certified
+ *
+ * @author ben
+ *
+ */
+public class WotLookup implements Serializable {
+
+	private static final long serialVersionUID = -1190433563214407622L;
+
+	private final boolean partial;
+	private final List<Result> results;
+
+	public WotLookup(boolean partial, List<Result> results) {
+		this.partial = partial;
+		this.results = results;
+	}
+
+	public boolean isPartial() {
+		return partial;
+	}
+
+	public List<Result> getResults() {
+		return results;
+	}
+
+	public static class Result implements Serializable {
+
+		private static final long serialVersionUID = 6023148722364916384L;
+
+		private final String pubkey;
+		private final List<Uid> uids;
+		private final List<Signed> signed;
+
+		public Result(String pubkey, List<Uid> uids, List<Signed> signed) {
+			this.pubkey = pubkey;
+			this.uids = uids;
+			this.signed = signed;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public List<Uid> getUids() {
+			return uids;
+		}
+
+		public List<Signed> getSigned() {
+			return signed;
+		}
+	}
+
+	/**
+	 * An identity and the certifications it received
+	 */
+	public static class Uid implements Serializable {
+
+		private static final long serialVersionUID = -2447419957140325290L;
+
+		private final String uid;
+		private final String timestamp;
+		private final Integer revokedOn;
+		private final String self;
+		private final List<Other> others;
+
+		/**
+		 * @param revokedOn the block of its revocation, null if it was not
+		 */
+		public Uid(String uid, String timestamp, Integer revokedOn, String self, List<Other> others) {
+			this.uid = uid;
+			this.timestamp = timestamp;
+			this.revokedOn = revokedOn;
+			this.self = self;
+			this.others = others;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+
+		public Map<String, String> getMeta() {
+			return Map.of("timestamp", timestamp);
+		}
+
+		public boolean isRevoked() {
+			return revokedOn != null;
+		}
+
+		@JsonProperty("revoked_on")
+		public Integer getRevokedOn() {
+			return revokedOn;
+		}
+
+		public String getSelf() {
+			return self;
+		}
+
+		public List<Other> getOthers() {
+			return others;
+		}
+	}
+
+	/**
+	 * A certifier of the identity
+	 */
+	public static class Other implements Serializable {
+
+		private static final long serialVersionUID = 8795637318245005519L;
+
+		private final String pubkey;
+		private final String uid;
+		private final int signedOn;
+		private final boolean member;
+		private final boolean wasMember;
+		private final String signature;
+
+		public Other(String pubkey, String uid, int signedOn, boolean member, boolean wasMember, String signature) {
+			this.pubkey = pubkey;
+			this.uid = uid;
+			this.signedOn = signedOn;
+			this.member = member;
+			this.wasMember = wasMember;
+			this.signature = signature;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public Map<String, Integer> getMeta() {
+			return Map.of("block_number", signedOn);
+		}
+
+		public List<String> getUids() {
+			return uid == null ? List.of() : List.of(uid);
+		}
+
+		@JsonProperty("isMember")
+		public boolean isMember() {
+			return member;
+		}
+
+		@JsonProperty("wasMember")
+		public boolean wasMember() {
+			return wasMember;
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+	}
+
+	/**
+	 * An identity the looked up key certified
+	 */
+	public static class Signed implements Serializable {
+
+		private static final long serialVersionUID = 4301728765512296613L;
+
+		private final String pubkey;
+		private final String uid;
+		private final String timestamp;
+		private final int signedOn;
+		private final boolean member;
+		private final boolean wasMember;
+		private final String signature;
+
+		public Signed(String pubkey, String uid, String timestamp, int signedOn, boolean member, boolean wasMember,
+				String signature) {
+			this.pubkey = pubkey;
+			this.uid = uid;
+			this.timestamp = timestamp;
+			this.signedOn = signedOn;
+			this.member = member;
+			this.wasMember = wasMember;
+			this.signature = signature;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+
+		public Map<String, String> getMeta() {
+			return timestamp == null ? Map.of() : Map.of("timestamp", timestamp);
+		}
+
+		@JsonProperty("cert_time")
+		public Map<String, Integer> getCertTime() {
+			return Map.of("block", signedOn);
+		}
+
+		@JsonProperty("isMember")
+		public boolean isMember() {
+			return member;
+		}
+
+		@JsonProperty("wasMember")
+		public boolean wasMember() {
+			return wasMember;
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The answer of /wot/members : the current members, by uid
+ *
+ * @author ben
+ *
+ */
+public class WotMembers implements Serializable {
+
+	private static final long serialVersionUID = -6101926356373504383L;
+
+	private final List<Member> results;
+
+	public WotMembers(List<Member> results) {
+		this.results = results;
+	}
+
+	public List<Member> getResults() {
+		return results;
+	}
+
+	public static class Member implements Serializable {
+
+		private static final long serialVersionUID = 5521498012418957136L;
+
+		private final String pubkey;
+		private final String uid;
+
+		public Member(String pubkey, String uid) {
+			this.pubkey = pubkey;
+			this.uid = uid;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+	}
+
+}
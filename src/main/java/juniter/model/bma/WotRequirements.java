@@ -0,0 +1,160 @@
+package juniter.model.bma;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The answer of /wot/requirements/{search} : how far an identity is from
+ * staying, or becoming, a member
+ *
+ * <pre>
+ *  - outdistanced : fewer than xpercent of the sentries reach it within stepMax certifications
+ *  - certifications : the living ones it received, with the seconds before they expire
+ *  - nothing is pending : there is no sandbox of identities, memberships or certifications yet
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+public class WotRequirements implements Serializable {
+
+	private static final long serialVersionUID = -7301586618394452241L;
+
+	private final List<Requirement> identities;
+
+	public WotRequirements(List<Requirement> identities) {
+		this.identities = identities;
+	}
+
+	public List<Requirement> getIdentities() {
+		return identities;
+	}
+
+	public static class Requirement implements Serializable {
+
+		private static final long serialVersionUID = 2316104975520474815L;
+
+		private final String pubkey;
+		private final String uid;
+		private final String timestamp;
+		private final Integer revokedOn;
+		private final boolean outdistanced;
+		private final boolean sentry;
+		private final boolean wasMember;
+		private final List<Cert> certifications;
+		private final long membershipExpiresIn;
+
+		/**
+		 * @param revokedOn the block of its revocation, null if it was not
+		 */
+		public Requirement(String pubkey, String uid, String timestamp, Integer revokedOn, boolean outdistanced,
+				boolean sentry, boolean wasMember, List<Cert> certifications, long membershipExpiresIn) {
+			this.pubkey = pubkey;
+			this.uid = uid;
+			this.timestamp = timestamp;
+			this.revokedOn = revokedOn;
+			this.outdistanced = outdistanced;
+			this.sentry = sentry;
+			this.wasMember = wasMember;
+			this.certifications = certifications;
+			this.membershipExpiresIn = membershipExpiresIn;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+
+		public Map<String, String> getMeta() {
+			return timestamp == null ? Map.of() : Map.of("timestamp", timestamp);
+		}
+
+		public boolean isRevoked() {
+			return revokedOn != null;
+		}
+
+		@JsonProperty("revoked_on")
+		public Integer getRevokedOn() {
+			return revokedOn;
+		}
+
+		/**
+		 * @return false : only written identities are known, they do not expire
+		 */
+		public boolean isExpired() {
+			return false;
+		}
+
+		public boolean isOutdistanced() {
+			return outdistanced;
+		}
+
+		@JsonProperty("isSentry")
+		public boolean isSentry() {
+			return sentry;
+		}
+
+		@JsonProperty("wasMember")
+		public boolean wasMember() {
+			return wasMember;
+		}
+
+		public List<Cert> getCertifications() {
+			return certifications;
+		}
+
+		public List<Object> getPendingCerts() {
+			return List.of();
+		}
+
+		public List<Object> getPendingMemberships() {
+			return List.of();
+		}
+
+		public long getMembershipPendingExpiresIn() {
+			return 0;
+		}
+
+		public long getMembershipExpiresIn() {
+			return Math.max(0, membershipExpiresIn);
+		}
+	}
+
+	/**
+	 * A living certification received, expiresIn seconds from the head's
+	 * median time
+	 */
+	public static class Cert implements Serializable {
+
+		private static final long serialVersionUID = 4790143592368017219L;
+
+		private final String from;
+		private final String to;
+		private final long expiresIn;
+
+		public Cert(String from, String to, long expiresIn) {
+			this.from = from;
+			this.to = to;
+			this.expiresIn = expiresIn;
+		}
+
+		public String getFrom() {
+			return from;
+		}
+
+		public String getTo() {
+			return to;
+		}
+
+		public long getExpiresIn() {
+			return expiresIn;
+		}
+	}
+
+}
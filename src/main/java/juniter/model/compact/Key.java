@@ -0,0 +1,173 @@
+package juniter.model.compact;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import juniter.utils.Constants;
+import juniter.utils.PubKeyCache;
+
+/**
+ * An interned public key : one instance per pubkey for the life of the node
+ *
+ * <pre>
+ *  - equality is identity, the hash code is the id
+ *  - ids are dense, from 0 in order of appearance : an index may keep arrays rather than maps, see {@link #byId(int)}
+ *  - json and database columns hold the base 58 form, as for {@link juniter.model.persistence.PubKey}
+ *  - the decoded bytes are not kept, they go through the {@link PubKeyCache}
+ * </pre>
+ *
+ * A few thousand members and tx issuers : the pool is never emptied.
+ *
+ * @author ben
+ *
+ */
+public final class Key implements Comparable<Key>, Serializable {
+
+	private static final long serialVersionUID = 2968452195731478920L;
+
+	private static final Pattern PUBKEY = Pattern.compile(Constants.Regex.PUBKEY);
+
+	private static final Map<String, Key> POOL = new ConcurrentHashMap<>(4096);
+
+	private static Key[] byId = new Key[4096];
+
+	private static int count;
+
+	private final String pubkey;
+
+	private final int id;
+
+	private Key(String pubkey, int id) {
+		this.pubkey = pubkey;
+		this.id = id;
+	}
+
+	/**
+	 * @param pubkey base 58, null gives null
+	 * @throws IllegalArgumentException if it is not a pubkey
+	 */
+	@JsonCreator
+	public static Key of(String pubkey) {
+		if (pubkey == null)
+			return null;
+
+		var key = POOL.get(pubkey);
+		if (key != null)
+			return key;
+
+		if (!PUBKEY.matcher(pubkey).matches())
+			throw new IllegalArgumentException("Not a pubkey : " + pubkey);
+		return POOL.computeIfAbsent(pubkey, Key::create);
+	}
+
+	/**
+	 * @return the key if it was met already, null otherwise : looking a request
+	 *         parameter up does not grow the pool
+	 */
+	public static Key lookup(String pubkey) {
+		return pubkey == null ? null : POOL.get(pubkey);
+	}
+
+	/**
+	 * @return the pooled String equal to pubkey, pubkey itself when it is not a
+	 *         valid one
+	 */
+	public static String intern(String pubkey) {
+		if (pubkey == null)
+			return null;
+
+		var key = POOL.get(pubkey);
+		if (key != null)
+			return key.pubkey;
+		return PUBKEY.matcher(pubkey).matches() ? of(pubkey).pubkey : pubkey;
+	}
+
+	/**
+	 * @return the key numbered id, null if there is none yet
+	 */
+	public static synchronized Key byId(int id) {
+		return id >= 0 && id < count ? byId[id] : null;
+	}
+
+	/**
+	 * @return the number of keys met so far, every id is below it
+	 */
+	public static synchronized int count() {
+		return count;
+	}
+
+	private static synchronized Key create(String pubkey) {
+		if (count == byId.length) {
+			byId = Arrays.copyOf(byId, count * 2);
+		}
+		var key = new Key(pubkey, count);
+		byId[count++] = key;
+		return key;
+	}
+
+	public int id() {
+		return id;
+	}
+
+	/**
+	 * @return the 32 bytes of the key, shared : not to be modified
+	 */
+	public byte[] bytes() {
+		return PubKeyCache.SHARED.decode(pubkey);
+	}
+
+	@JsonValue
+	@Override
+	public String toString() {
+		return pubkey;
+	}
+
+	@Override
+	public int compareTo(Key o) {
+		return pubkey.compareTo(o.pubkey);
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return this == o;
+	}
+
+	/**
+	 * back to the pooled instance
+	 */
+	private Object readResolve() {
+		return of(pubkey);
+	}
+
+	/**
+	 * A Key attribute stored as its base 58 form
+	 */
+	@Converter(autoApply = true)
+	public static class JpaConverter implements AttributeConverter<Key, String> {
+
+		@Override
+		public String convertToDatabaseColumn(Key key) {
+			return key == null ? null : key.pubkey;
+		}
+
+		@Override
+		public Key convertToEntityAttribute(String pubkey) {
+			return of(pubkey);
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package juniter.model.compact;
+
+import java.io.Serializable;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * A block stamp, ie: 127129-00000232C91E..., as a number and a
+ * {@link Hash256}
+ *
+ * <pre>
+ *  - the compact counterpart of {@link juniter.model.persistence.BStamp}
+ *  - json and database columns hold the buid
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+public final class Stamp implements Comparable<Stamp>, Serializable {
+
+	private static final long serialVersionUID = 4459630761921146820L;
+
+	private final int number;
+
+	private final Hash256 hash;
+
+	public Stamp(int number, Hash256 hash) {
+		this.number = number;
+		this.hash = hash;
+	}
+
+	/**
+	 * @param buid number-hash, null gives null
+	 * @throws IllegalArgumentException if it is not a buid
+	 */
+	@JsonCreator
+	public static Stamp of(String buid) {
+		if (buid == null)
+			return null;
+
+		final int dash = buid.indexOf('-');
+		if (dash <= 0)
+			throw new IllegalArgumentException("Not a buid : " + buid);
+		try {
+			return new Stamp(Integer.parseInt(buid.substring(0, dash)), Hash256.of(buid.substring(dash + 1)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a buid : " + buid, e);
+		}
+	}
+
+	public int number() {
+		return number;
+	}
+
+	public Hash256 hash() {
+		return hash;
+	}
+
+	@JsonValue
+	@Override
+	public String toString() {
+		return number + "-" + hash;
+	}
+
+	/**
+	 * by number, then by hash for the forks
+	 */
+	@Override
+	public int compareTo(Stamp o) {
+		final int res = Integer.compare(number, o.number);
+		return res != 0 ? res : hash.compareTo(o.hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * number + hash.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Stamp))
+			return false;
+		var other = (Stamp) o;
+		return number == other.number && hash.equals(other.hash);
+	}
+
+	/**
+	 * A Stamp attribute stored as its buid
+	 */
+	@Converter(autoApply = true)
+	public static class JpaConverter implements AttributeConverter<Stamp, String> {
+
+		@Override
+		public String convertToDatabaseColumn(Stamp stamp) {
+			return stamp == null ? null : stamp.toString();
+		}
+
+		@Override
+		public Stamp convertToEntityAttribute(String buid) {
+			return of(buid);
+		}
+	}
+
+}
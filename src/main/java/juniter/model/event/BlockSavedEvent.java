@@ -0,0 +1,28 @@
+package juniter.model.event;
+
+import juniter.model.Block;
+
+/**
+ * Published each time a {@link Block} goes through the repository's save
+ * methods. Listeners must be idempotent, a block may be saved more than once.
+ * 
+ * @author ben
+ *
+ */
+public class BlockSavedEvent {
+
+	private final Block block;
+
+	public BlockSavedEvent(Block block) {
+		this.block = block;
+	}
+
+	public Block getBlock() {
+		return block;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockSavedEvent [" + block + "]";
+	}
+}
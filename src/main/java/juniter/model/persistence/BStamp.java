@@ -1,6 +1,7 @@
 package juniter.model.persistence;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.Column;
@@ -11,6 +12,9 @@ import javax.validation.constraints.Min;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import juniter.model.compact.Hash256;
+import juniter.model.compact.Stamp;
+
 /**
  * ex : [ "BASIC_MERKLED_API metab.ucoin.io 88.174.120.187 9201" ]
  * 
@@ -40,7 +44,14 @@ public class BStamp implements Serializable {
 	}
 
 	public String getBuid() {
-		return blockNumber + "-" + blockHash;
+		return toRaw(new StringBuilder(80)).toString();
+	}
+
+	/**
+	 * Appends the buid, ie: 127129-00000232C91E...
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(blockNumber).append('-').append(blockHash.getHash());
 	}
 
 	public void setBuid(String buid) {
@@ -52,8 +63,28 @@ public class BStamp implements Serializable {
 		blockHash.setHash(pat[1]);
 	}
 	
+	/**
+	 * @return the number and 32 bytes hash form, not a getter
+	 */
+	public Stamp compact() {
+		return new Stamp(blockNumber, Hash256.of(blockHash.getHash()));
+	}
+
 	@Override
 	public String toString() {
 		return getBuid();
 	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof BStamp))
+			return false;
+		var other = (BStamp) o;
+		return Objects.equals(other.blockNumber, blockNumber) && Objects.equals(other.blockHash, blockHash);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(blockNumber, blockHash);
+	}
 }
\ No newline at end of file
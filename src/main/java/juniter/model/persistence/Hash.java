@@ -1,12 +1,14 @@
 package juniter.model.persistence;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
+import juniter.model.compact.Hash256;
 import juniter.utils.Constants;
 
 
@@ -35,9 +37,26 @@ public class Hash implements Serializable {
 		this.hash = Hash;
 	}
 
+	/**
+	 * @return the 32 bytes form, not a getter
+	 */
+	public Hash256 compact() {
+		return Hash256.of(hash);
+	}
+
 	@Override
 	public String toString() {
 		return this.getHash();
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Hash && Objects.equals(((Hash) o).hash, hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(hash);
+	}
+
 }
@@ -1,7 +1,10 @@
 package juniter.model.persistence;
 
 import java.io.Serializable;
+import java.util.Objects;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import javax.validation.constraints.Pattern;
@@ -10,34 +13,68 @@ import javax.validation.constraints.Size;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import juniter.model.compact.Key;
 import juniter.utils.Constants;
+import juniter.utils.PubKeyCache;
 
 
-@Embeddable public class PubKey implements Serializable 
+/**
+ * Mapped through its accessors so that the keys read from the database are
+ * interned as well
+ */
+@Embeddable
+@Access(AccessType.PROPERTY)
+public class PubKey implements Serializable 
 {
 	private static final Logger logger = LogManager.getLogger();
 
 	private static final long serialVersionUID = -1179432682292981009L;
 	
-	@Size(min=43, max=45)
-	@Column(length=45)
-	@Pattern(regexp=Constants.Regex.PUBKEY)
 	private String pubkey;
 
 	public PubKey() {
 	}
 
 	public PubKey(String pubKey) {
-		this.pubkey = pubKey;
+		setPubkey(pubKey);
+	}
+
+	/**
+	 * @param key the 32 bytes of an Ed25519 public key
+	 */
+	public static PubKey of(byte[] key) {
+		return new PubKey(PubKeyCache.SHARED.encode(key));
 	}
 
+	@Size(min=43, max=45)
+	@Column(length=45)
+	@Pattern(regexp=Constants.Regex.PUBKEY)
 	public String getPubkey() {
 		return pubkey;
 	}
 
 	
+	/**
+	 * The String is interned, the same member's key is held once whatever the
+	 * number of documents it appears in
+	 */
 	public void setPubkey(String pubkey) {
-		this.pubkey = pubkey;
+		this.pubkey = Key.intern(pubkey);
+	}
+
+	/**
+	 * @return the interned {@link Key}, not a getter
+	 */
+	public Key key() {
+		return Key.of(pubkey);
+	}
+
+	/**
+	 * The decoded key, shared through the {@link PubKeyCache} : not to be
+	 * modified. Not a getter, neither persisted nor serialized
+	 */
+	public byte[] bytes() {
+		return PubKeyCache.SHARED.decode(pubkey);
 	}
 
 	@Override
@@ -54,8 +91,16 @@ import juniter.utils.Constants;
 			return ((String)o).equals(pubkey);
 		}
 		if (o instanceof PubKey) {
-			return ((PubKey)o).pubkey.equals(pubkey);
+			return Objects.equals(((PubKey)o).pubkey, pubkey);
 		}
 		return false;
 	}
+
+	/**
+	 * the String's, consistent with both equalities
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(pubkey);
+	}
 }
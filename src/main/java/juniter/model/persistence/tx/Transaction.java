@@ -2,7 +2,9 @@ package juniter.model.persistence.tx;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.persistence.AttributeOverride;
@@ -13,7 +15,9 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
@@ -21,6 +25,8 @@ import javax.validation.constraints.Size;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
@@ -29,9 +35,10 @@ import juniter.model.persistence.Hash;
 import juniter.model.persistence.PubKey;
 import juniter.model.persistence.Signature;
 import juniter.utils.Constants;
+import juniter.utils.RawWriter;
 
 @Entity
-@Table(name = "transaction", schema = "public")
+@Table(name = "transaction", schema = "public", indexes = @Index(name = "idx_tx_hash", columnList = "tx_hash"))
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Transaction implements Serializable {
 
@@ -39,8 +46,11 @@ public class Transaction implements Serializable {
 
 	private static final long serialVersionUID = -1472028218837984061L;
 
+	private static final java.util.regex.Pattern SIG = java.util.regex.Pattern.compile("SIG\\(([^)]+)\\)");
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+	@SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = Constants.Defaults.ID_ALLOCATION_SIZE)
 	private Long id;
 	
 //	@JsonIgnoreProperties()
@@ -67,26 +77,31 @@ public class Transaction implements Serializable {
 
 	@Valid 
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "tx_issuers", joinColumns = @JoinColumn(name = "tx_id"))
 	private List<PubKey> issuers = new ArrayList<PubKey>(); //
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "tx_inputs", joinColumns = @JoinColumn(name = "tx_id"))
 	private List<TxInput> inputs = new ArrayList<TxInput>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "tx_outputs", joinColumns = @JoinColumn(name = "tx_id"))
 	private List<TxOutput> outputs = new ArrayList<TxOutput>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "tx_unlocks", joinColumns = @JoinColumn(name = "tx_id"))
 	private List<TxUnlock> unlocks = new ArrayList<TxUnlock>();
 
 	@Valid
 	@ElementCollection
+	@Fetch(FetchMode.SUBSELECT)
 	@CollectionTable(name = "tx_signatures", joinColumns = @JoinColumn(name = "tx_id"))
 	private List<Signature> signatures = new ArrayList<Signature>();
 
@@ -197,26 +212,67 @@ public class Transaction implements Serializable {
 	}
 
 	/**
-	 * ex :
-	 * Transactions:\nTX:10:1:1:1:2:0:0\n127129-00000232C91EF53648DA67D5DA32DA54C766238B48C512F66C7CC769585DFCBE\n8ysx7yQe47ffx379Evv3R6Qys86ekmVxwYTiVTqWq73e\n9506:0:T:97A239CA02FA2F97B859C2EA093FE68FEADF90A1FDE8EE69711C2048BD328128:1\n0:SIG(0)\n1000:0:SIG(CCdjH7Pd8GPe74ZbiD1DdZ1CXQ2ggYVehk2c7iVV6NwJ)\n8506:0:SIG(8ysx7yQe47ffx379Evv3R6Qys86ekmVxwYTiVTqWq73e)\nEP9BhAMIbDSy9nfplSmmvp7yI6t79kO0/7/bdecGjayH+hrZxT2R4xkpEVyV3qo6Ztc1TwK+F2Hf2big5pVrCA==
+	 * The compact document as it appears in a block, each line ended by a new
+	 * line, ex :
+	 * 
+	 * <pre>
+	 * TX:10:1:1:1:2:0:0
+	 * 127129-00000232C91EF53648DA67D5DA32DA54C766238B48C512F66C7CC769585DFCBE
+	 * 8ysx7yQe47ffx379Evv3R6Qys86ekmVxwYTiVTqWq73e
+	 * 9506:0:T:97A239CA02FA2F97B859C2EA093FE68FEADF90A1FDE8EE69711C2048BD328128:1
+	 * 0:SIG(0)
+	 * 1000:0:SIG(CCdjH7Pd8GPe74ZbiD1DdZ1CXQ2ggYVehk2c7iVV6NwJ)
+	 * 8506:0:SIG(8ysx7yQe47ffx379Evv3R6Qys86ekmVxwYTiVTqWq73e)
+	 * EP9BhAMIbDSy9nfplSmmvp7yI6t79kO0/7/bdecGjayH+hrZxT2R4xkpEVyV3qo6Ztc1TwK+F2Hf2big5pVrCA==
+	 * </pre>
+	 * 
+	 * the header is TX:VERSION:NB_ISSUERS:NB_INPUTS:NB_UNLOCKS:NB_OUTPUTS:HAS_COMMENT:LOCKTIME
 	 */
 	public String toRaw() {
-		return "TX:" + version + ":" + issuers.size() + ":" + inputs.size() + ":" + unlocks.size() + ":"
-				+ outputs.size() + ":" + locktime + ":" + blockstampTime + "\n" + blockstamp + "\n"
-				+ issuers.stream().map(i -> i.getPubkey()).collect(Collectors.joining("\n")) + "\n"
-				+ inputs.stream().map(in -> in.getInput()).collect(Collectors.joining("\n")) + "\n" //
-				+ unlocks.stream().map(in -> in.getUnlock()).collect(Collectors.joining("\n")) + "\n"
-				+ outputs.stream().map(in -> in.getOutput()).collect(Collectors.joining("\n")) + "\n"
-				+ signatures.stream().map(in -> in.getSignature()).collect(Collectors.joining("\n"));
+		return RawWriter.get().transaction(this).toString();
 	}
-	
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		final boolean hasComment = comment != null && !comment.isEmpty();
+		raw.append("TX:").append(version).append(':').append(issuers.size()).append(':').append(inputs.size())
+				.append(':').append(unlocks.size()).append(':').append(outputs.size()).append(':')
+				.append(hasComment ? 1 : 0).append(':').append(locktime == null ? 0 : locktime).append('\n');
+		blockstamp.toRaw(raw).append('\n');
+		RawWriter.lines(raw, issuers, (issuer, r) -> r.append(issuer.getPubkey()));
+		RawWriter.lines(raw, inputs, TxInput::toRaw);
+		RawWriter.lines(raw, unlocks, TxUnlock::toRaw);
+		RawWriter.lines(raw, outputs, TxOutput::toRaw);
+		if (hasComment) {
+			raw.append(comment).append('\n');
+		}
+		return RawWriter.lines(raw, signatures, (signature, r) -> r.append(signature.getSignature()));
+	}
+
 	public boolean txSentBy(Object pubkey ) {
 		return issuers.stream().anyMatch(pk -> pk.equals(pubkey));
 	}
 
 
 	public boolean txReceivedBy(Object pubkey) {
-		return issuers.stream().anyMatch(pk -> pk.equals(pubkey));
+		return recipients().contains(pubkey.toString());
+	}
+
+	/**
+	 * @return the pubkeys appearing in a SIG() condition of the outputs, the
+	 *         issuers' change included
+	 */
+	public Set<String> recipients() {
+		var res = new LinkedHashSet<String>();
+		for (var output : outputs) {
+			var m = SIG.matcher(output.Function());
+			while (m.find()) {
+				res.add(m.group(1));
+			}
+		}
+		return res;
 	}
 
 }
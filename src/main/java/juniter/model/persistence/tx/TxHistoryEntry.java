@@ -0,0 +1,101 @@
+package juniter.model.persistence.tx;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import juniter.utils.Constants;
+
+/**
+ * One line per (pubkey, transaction) : the issuers as SENT, the other SIG()
+ * recipients of the outputs as RECEIVED. <br>
+ *
+ * Maintained when a block is saved, it turns /tx/history into index range
+ * scans over (pubkey, direction, blockNumber | medianTime)
+ *
+ * @author ben
+ *
+ */
+@Entity
+@Table(name = "tx_history", schema = "public", indexes = {
+		@Index(name = "idx_tx_history_block", columnList = "pubkey, direction, blockNumber"),
+		@Index(name = "idx_tx_history_time", columnList = "pubkey, direction, medianTime"),
+		@Index(name = "idx_tx_history_container", columnList = "blockNumber") })
+public class TxHistoryEntry implements Serializable {
+
+	private static final long serialVersionUID = 2837460316722063812L;
+
+	public enum Direction {
+		SENT, RECEIVED
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tx_history_seq")
+	@SequenceGenerator(name = "tx_history_seq", sequenceName = "tx_history_seq", allocationSize = Constants.Defaults.ID_ALLOCATION_SIZE)
+	private Long id;
+
+	@Column(length = 45, nullable = false)
+	private String pubkey;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = 8, nullable = false)
+	private Direction direction;
+
+	/**
+	 * number of the block containing the transaction
+	 */
+	private Integer blockNumber;
+
+	/**
+	 * medianTime of the block containing the transaction
+	 */
+	private Long medianTime;
+
+	@Column(length = 64)
+	private String txHash;
+
+	public TxHistoryEntry() {
+	}
+
+	public TxHistoryEntry(String pubkey, Direction direction, Integer blockNumber, Long medianTime, String txHash) {
+		this.pubkey = pubkey;
+		this.direction = direction;
+		this.blockNumber = blockNumber;
+		this.medianTime = medianTime;
+		this.txHash = txHash;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getPubkey() {
+		return pubkey;
+	}
+
+	public Direction getDirection() {
+		return direction;
+	}
+
+	public Integer getBlockNumber() {
+		return blockNumber;
+	}
+
+	public Long getMedianTime() {
+		return medianTime;
+	}
+
+	public String getTxHash() {
+		return txHash;
+	}
+
+}
@@ -56,8 +56,17 @@ public class TxInput implements Serializable {
 	}
 
 	public String getInput() {
-		return amount + ":" + base + ":" + type + ":"
-				+ (TxType.D.equals(type) ? (dsource + ":" + dBlockID) : (tHash + ":" + tIndex));
+		return toRaw(new StringBuilder(100)).toString();
+	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		raw.append(amount).append(':').append(base).append(':').append(type).append(':');
+		return TxType.D.equals(type) //
+				? raw.append(dsource.getPubkey()).append(':').append(dBlockID)
+				: raw.append(tHash.getHash()).append(':').append(tIndex);
 	}
 
 	public void setInput(String input) {
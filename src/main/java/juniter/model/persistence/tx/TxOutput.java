@@ -40,7 +40,14 @@ public class TxOutput implements Serializable {
 	}
 
 	public String getOutput() {
-		return amount + ":" + base + ":" + outputCondition;
+		return toRaw(new StringBuilder(80)).toString();
+	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(amount).append(':').append(base).append(':').append(outputCondition);
 	}
 
 	public void setOutput(String output) {
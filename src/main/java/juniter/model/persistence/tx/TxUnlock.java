@@ -38,7 +38,14 @@ public class TxUnlock implements Serializable {
 	}
 	
 	public String getUnlock(){
-		return id +":"+function;
+		return toRaw(new StringBuilder(16)).toString();
+	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(id).append(':').append(function);
 	}
 	
 	public void setUnlock(String unlock) {
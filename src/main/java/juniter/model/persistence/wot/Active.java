@@ -42,7 +42,7 @@ public class Active implements Serializable {
 	}
 
 	public String getActive() {
-		return active + ":" + signature + ":" + buid1 + ":" + buid2 +":"+pseudo;
+		return toRaw(new StringBuilder(256)).toString();
 	}
 
 	public void setActive(String leaver) {
@@ -57,9 +57,21 @@ public class Active implements Serializable {
 		//this.leaver = joiner;
 	}
 
+	public PubKey pubkey() {
+		return active;
+	}
+
 	public String toRaw() {
 		return getActive();
 	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		raw.append(active.getPubkey()).append(':').append(signature).append(':');
+		return buid1.toRaw(raw).append(':').append(buid2).append(':').append(pseudo);
+	}
 	
 	@Override
 	public String toString() {
@@ -8,6 +8,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
@@ -38,7 +39,8 @@ public class Certification implements Serializable {
 	private PubKey certified = new PubKey();
 	
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "certification_seq")
+	@SequenceGenerator(name = "certification_seq", sequenceName = "certification_seq", allocationSize = Constants.Defaults.ID_ALLOCATION_SIZE)
 	private Long id;
 	
 	private Integer blockNumber;
@@ -81,13 +83,21 @@ public class Certification implements Serializable {
 	}
 
 	public String getCertif() {
-		return certifier.getPubkey() + ":" + certified + ":" + blockNumber + ":" + signature; 
+		return toRaw(new StringBuilder(200)).toString();
 	}
 
 	public String toRaw() {
 		return getCertif();
 	}
 
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(certifier.getPubkey()).append(':').append(certified.getPubkey()).append(':')
+				.append(blockNumber).append(':').append(signature);
+	}
+
 	public boolean isCertifiedBy(String cert){
 		return certified.getPubkey().equals(cert);
 	}
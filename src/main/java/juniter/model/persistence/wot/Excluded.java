@@ -39,10 +39,21 @@ public class Excluded implements Serializable {
 		excluded.setPubkey(vals[0]);
 	}
 
+	public PubKey pubkey() {
+		return excluded;
+	}
+
 	public String toRaw() {
 		return getExcluded();
 	}
 
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(excluded.getPubkey());
+	}
+
 	@Override
 	public String toString() {
 		return getExcluded();
@@ -51,7 +51,7 @@ public class Identity implements Serializable {
 	}
 
 	public String getIdentity() {
-		return newidentity+":"+signature+":"+buid+":"+pseudo;
+		return toRaw(new StringBuilder(256)).toString();
 	}
 
 	public void setIdentity(String identity) {
@@ -63,9 +63,36 @@ public class Identity implements Serializable {
 		pseudo = vals[3];
 	}
 
+	public PubKey pubkey() {
+		return newidentity;
+	}
+
+	public String uid() {
+		return pseudo;
+	}
+
+	/**
+	 * @return the block the identity was signed at
+	 */
+	public BStamp buid() {
+		return buid;
+	}
+
+	public String signature() {
+		return signature.getSignature();
+	}
+
 	public String toRaw() {
 		return getIdentity();
 	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		raw.append(newidentity.getPubkey()).append(':').append(signature.getSignature()).append(':');
+		return buid.toRaw(raw).append(':').append(pseudo);
+	}
 	
 	public String toSring() {
 		return getIdentity();
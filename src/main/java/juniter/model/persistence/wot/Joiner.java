@@ -48,7 +48,7 @@ public class Joiner implements Serializable {
 	}
 
 	public String getJoiner() {
-		return joinerKey + ":" + signature + ":" + buid1+ ":" + buid2 +":"+pseudo;
+		return toRaw(new StringBuilder(256)).toString();
 	}
 
 	public void setJoiner(String joiner) {
@@ -62,9 +62,21 @@ public class Joiner implements Serializable {
 		pseudo = vals[4];
 	}
 
+	public PubKey pubkey() {
+		return joinerKey;
+	}
+
 	public String toRaw() {
 		return getJoiner();
 	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		raw.append(joinerKey.getPubkey()).append(':').append(signature).append(':');
+		return buid1.toRaw(raw).append(':').append(buid2).append(':').append(pseudo);
+	}
 	
 	@Override
 	public String toString() {
@@ -44,7 +44,7 @@ public class Leaver implements Serializable {
 	}
 
 	public String getLeaver() {
-		return leaver + ":" + signature + ":" + buid1 + ":" + buid2 +":"+pseudo;
+		return toRaw(new StringBuilder(256)).toString();
 	}
 
 	public void setLeaver(String leaver) {
@@ -59,9 +59,21 @@ public class Leaver implements Serializable {
 		//this.leaver = joiner;
 	}
 
+	public PubKey pubkey() {
+		return leaver;
+	}
+
 	public String toRaw() {
 		return getLeaver();
 	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		raw.append(leaver.getPubkey()).append(':').append(signature).append(':');
+		return buid1.toRaw(raw).append(':').append(buid2).append(':').append(pseudo);
+	}
 	
 	@Override
 	public String toString() {
@@ -33,7 +33,7 @@ public class Revoked implements Serializable {
 	}
 
 	public String getRevoked() {
-		return revoked + ":" + signature ;
+		return toRaw(new StringBuilder(140)).toString();
 	}
 
 	public void setRevoked(String rev) {
@@ -44,9 +44,20 @@ public class Revoked implements Serializable {
 		signature = vals[1];
 	}
 
+	public PubKey pubkey() {
+		return revoked;
+	}
+
 	public String toRaw() {
 		return getRevoked();
 	}
+
+	/**
+	 * Appends the raw document, without building it as a String first
+	 */
+	public StringBuilder toRaw(StringBuilder raw) {
+		return raw.append(revoked.getPubkey()).append(':').append(signature);
+	}
 	
 	@Override
 	public String toString() {
@@ -1,24 +1,29 @@
 package juniter.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Repository;
 
 import juniter.model.Block;
+import juniter.utils.Constants;
 
 /**
  * Repository to manage {@link Block} instances.
  */
 @Repository
-public interface BlockRepository extends JpaRepository<Block, Long> {
+public interface BlockRepository extends JpaRepository<Block, Long>, BlockRepositoryCustom {
 
 	/**
 	 * Special customization of {@link CrudRepository#findOne(java.io.Serializable)}
@@ -34,15 +39,42 @@ public interface BlockRepository extends JpaRepository<Block, Long> {
 	Optional<Block> findTop1ByNumber(Integer number);
 	
 	
-	// TODO clean this up 
-//	@Query("select max(c.number) from Block c")
-	default Integer current() {
-		
-		return 139158 ; 
-	};
-		
 	Stream<Block> findByNumberIn(List<Integer> number);
 
+	/**
+	 * A page of blocks in a single statement, the collections are then loaded by
+	 * subselect : one statement per collection for the whole page
+	 * 
+	 * @param from first number, inclusive
+	 * @param to   last number, inclusive
+	 * @return the blocks ordered by number
+	 */
+	@Query("select b from Block b where b.number between ?1 and ?2 order by b.number")
+	List<Block> findRange(Integer from, Integer to);
+
+	/**
+	 * @param from first number, inclusive
+	 * @param to   last number, inclusive
+	 * @return the numbers stored in [from, to], from the index on block.number
+	 */
+	@Query("select b.number from Block b where b.number between ?1 and ?2")
+	List<Integer> numbersInRange(Integer from, Integer to);
+
+	/**
+	 * @return the numbers of the blocks that change the web of trust, the genesis
+	 *         always for its parameters
+	 */
+	@Query("select b.number from Block b where b.number = 0 or b.identities is not empty or b.joiners is not empty "
+			+ "or b.actives is not empty or b.excluded is not empty or b.revoked is not empty "
+			+ "or b.certifications is not empty order by b.number")
+	List<Integer> wotNumbers();
+
+	/**
+	 * As {@link #findRange(Integer, Integer)}, for blocks that are not contiguous
+	 */
+	@Query("select b from Block b where b.number in ?1 order by b.number")
+	List<Block> findPage(List<Integer> numbers);
+
 	Optional<Block> findTop1ByOrderByNumberDesc();
 
 	Stream<Block> findTop10ByOrderByNumberDesc();
@@ -75,14 +107,11 @@ public interface BlockRepository extends JpaRepository<Block, Long> {
 	 *
 	 * @return
 	 */
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Constants.Defaults.STREAM_FETCH_SIZE))
 	@Query("select c from Block c")
 	Stream<Block> streamAllBlocks();
 	
 
-	default Stream<Block> with(Predicate<Block> predicate) {
-		return streamAllBlocks().filter(predicate)
-				.sorted((b1, b2) -> b1.getNumber().compareTo(b2.getNumber()));
-	};
 
 
 
@@ -0,0 +1,47 @@
+package juniter.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import juniter.model.Block;
+import juniter.model.ChainHead;
+
+/**
+ * Custom fragment of {@link BlockRepository}, implemented by
+ * {@link BlockRepositoryImpl}
+ * 
+ * @author ben
+ *
+ */
+public interface BlockRepositoryCustom {
+
+	/**
+	 * Cached top of the local chain, seeded from the database at startup, moved
+	 * forward on every committed block save and seeded again after a fork
+	 * 
+	 * @return the head, empty if no block is stored yet
+	 */
+	Optional<ChainHead> head();
+
+	/**
+	 * @return the number of the highest block stored, -1 if none
+	 */
+	Integer current();
+
+	/**
+	 * Bulk ingestion mode : inserts go through JDBC batches and the persistence
+	 * context is flushed and cleared every hibernate.jdbc.batch_size blocks, so
+	 * that memory stays bounded whatever the number of blocks.
+	 * 
+	 * <p>
+	 * A new block whose number is already stored, or given twice, is skipped :
+	 * saving the same range again writes nothing. The returned blocks are
+	 * detached
+	 * </p>
+	 * 
+	 * @param blocks
+	 * @return the saved blocks, without the skipped ones
+	 */
+	<S extends Block> List<S> saveAllInBatch(Iterable<S> blocks);
+
+}
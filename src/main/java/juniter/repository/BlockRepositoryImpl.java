@@ -0,0 +1,170 @@
+package juniter.repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import juniter.model.Block;
+import juniter.model.ChainHead;
+import juniter.model.event.BlockSavedEvent;
+
+/**
+ * Implementation of {@link BlockRepositoryCustom}
+ * 
+ * <p>
+ * The head is kept in memory so that {@link #current()} costs nothing, it is
+ * seeded using the index on block.number then kept up to date through
+ * {@link BlockSavedEvent}, once the saving transaction committed : a rolled
+ * back save never moves it. A block saved at or below the head is a fork, the
+ * head is seeded again from what is stored, it may go down.
+ * </p>
+ * 
+ * <p>
+ * {@link #saveAllInBatch(Iterable)} bypasses the repository's domain events,
+ * it publishes one {@link BlockSavedEvent} per block itself after each flush
+ * </p>
+ * 
+ * @author ben
+ *
+ */
+public class BlockRepositoryImpl implements BlockRepositoryCustom {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+
+	private final AtomicReference<ChainHead> head = new AtomicReference<ChainHead>();
+
+	private volatile boolean seeded = false;
+
+	@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+	private int batchSize;
+
+	@Override
+	public Optional<ChainHead> head() {
+		if (!seeded) {
+			seed();
+		}
+		return Optional.ofNullable(head.get());
+	}
+
+	@Override
+	public Integer current() {
+		return head().map(ChainHead::getNumber).orElse(-1);
+	}
+
+	@Override
+	@Transactional
+	public <S extends Block> List<S> saveAllInBatch(Iterable<S> blocks) {
+		var res = new ArrayList<S>();
+		var stored = new HashSet<Integer>();
+		var chunk = new ArrayList<S>(batchSize);
+		int skipped = 0;
+		for (var it = blocks.iterator(); it.hasNext();) {
+			chunk.add(it.next());
+			if (chunk.size() < batchSize && it.hasNext())
+				continue;
+
+			stored.addAll(storedNumbers(chunk));
+			final int from = res.size();
+			for (S block : chunk) {
+				if (block.id() == null) {
+					if (!stored.add(block.getNumber())) {
+						skipped++;
+						continue;
+					}
+					em.persist(block);
+				} else {
+					block = em.merge(block);
+				}
+				res.add(block);
+			}
+			flush(res.subList(from, res.size()));
+			chunk.clear();
+		}
+		logger.debug("Batch saved " + res.size() + " blocks, skipped " + skipped + " already stored");
+		return res;
+	}
+
+	/**
+	 * @return the numbers of the new blocks that are stored already
+	 */
+	private List<Integer> storedNumbers(List<? extends Block> blocks) {
+		var numbers = blocks.stream() //
+				.filter(b -> b.id() == null && b.getNumber() != null) //
+				.map(Block::getNumber) //
+				.collect(Collectors.toList());
+		if (numbers.isEmpty())
+			return numbers;
+
+		return em.createQuery("select b.number from Block b where b.number in :numbers", Integer.class) //
+				.setParameter("numbers", numbers) //
+				.getResultList();
+	}
+
+	/**
+	 * Writes the pending blocks then tells the listeners while the blocks are
+	 * still attached, what the listeners wrote is flushed before the session is
+	 * cleared
+	 */
+	private void flush(List<? extends Block> pending) {
+		em.flush();
+		pending.forEach(block -> publisher.publishEvent(new BlockSavedEvent(block)));
+		em.flush();
+		em.clear();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void seed() {
+		final var before = head.get();
+		var res = em.createQuery("select b.number, b.hash.hash from Block b " //
+				+ "where b.number = (select max(c.number) from Block c)", Object[].class) //
+				.setMaxResults(1) //
+				.getResultList();
+
+		var stored = res.isEmpty() ? null : new ChainHead((Integer) res.get(0)[0], (String) res.get(0)[1]);
+		head.compareAndSet(before, stored); // unless a block committed meanwhile moved it
+		seeded = true;
+		logger.info("Seeded chain head : " + head.get());
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onBlockSaved(BlockSavedEvent event) {
+		var block = event.getBlock();
+		if (block.getNumber() == null)
+			return;
+
+		var candidate = ChainHead.of(block);
+		var cur = head.getAndAccumulate(candidate,
+				(c, cand) -> c == null || cand.getNumber() > c.getNumber() ? cand : c);
+		// a block below the head, ie: backfilled, cannot lower it ; the head itself replaced can
+		if (cur != null && candidate.getNumber() == cur.getNumber()
+				&& !Objects.equals(candidate.getHash(), cur.getHash())) {
+			logger.info("Head " + cur + " replaced by " + candidate + ", seeding it again");
+			seeded = false; // read lazily, outside of the committed transaction
+		}
+	}
+
+}
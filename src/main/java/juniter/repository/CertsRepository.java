@@ -1,20 +1,28 @@
 package juniter.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import juniter.model.persistence.wot.Certification;
+import juniter.utils.Constants;
 
 public interface CertsRepository extends JpaRepository<Certification, Long> {
 
 //	@Override
 //	Optional<Transaction> findById(Long id);
 	
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Constants.Defaults.STREAM_FETCH_SIZE))
 	@Query("select t from Certification t where certified.pubkey = ?1 ")
 	Stream<Certification> streamCertifiersOf(String pubkeyOrUid);
 
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Constants.Defaults.STREAM_FETCH_SIZE))
 	@Query("select t from Certification t where certifier.pubkey = ?1 ")
 	Stream<Certification> streamCertifiedBy(String pubkeyOrUid);
 	
@@ -0,0 +1,30 @@
+package juniter.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import juniter.model.persistence.tx.TxHistoryEntry;
+
+public interface TxHistoryRepository extends JpaRepository<TxHistoryEntry, Long> {
+
+	/**
+	 * @param number the container block
+	 * @return the transaction hashes already indexed for that block
+	 */
+	@Query("select distinct h.txHash from TxHistoryEntry h where h.blockNumber = ?1")
+	List<String> txHashesByBlockNumber(Integer number);
+
+	/**
+	 * drop the entries of a block before (re)indexing it
+	 * 
+	 * @param number the container block
+	 * @return the number of deleted entries
+	 */
+	@Modifying
+	@Query("delete from TxHistoryEntry h where h.blockNumber = ?1")
+	int deleteByBlockNumber(Integer number);
+
+}
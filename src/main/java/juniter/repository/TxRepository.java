@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 
 import juniter.model.persistence.Hash;
 import juniter.model.persistence.tx.Transaction;
+import juniter.model.persistence.tx.TxHistoryEntry.Direction;
 import java.lang.String;
 import java.util.List;
 
@@ -21,26 +22,49 @@ public interface TxRepository extends JpaRepository<Transaction, Long> {
 	@Query("select t from Transaction t where tx_hash = ?1")
 	List<Transaction> findByTHash(String hash);
 	
+	/**
+	 * Transactions of a pubkey through the tx_history index, in block order. The
+	 * entries are joined on their container block too : a transaction stored
+	 * twice, or pasted in another block, is only listed where the entry points
+	 * 
+	 * @param pubkey the issuer or recipient
+	 * @param direction SENT or RECEIVED
+	 * @param from first container block, inclusive
+	 * @param to last container block, inclusive
+	 * @return
+	 */
+	@Query("select t from Block b join b.transactions t, TxHistoryEntry h where h.blockNumber = b.number "
+			+ "and h.txHash = t.hash.hash and h.pubkey = ?1 and h.direction = ?2 and h.blockNumber between ?3 and ?4 "
+			+ "order by h.blockNumber")
+	List<Transaction> historyByBlocks(String pubkey, Direction direction, Integer from, Integer to);
+
+	/**
+	 * Same as {@link #historyByBlocks} filtered on the medianTime of the container
+	 * block
+	 */
+	@Query("select t from Block b join b.transactions t, TxHistoryEntry h where h.blockNumber = b.number "
+			+ "and h.txHash = t.hash.hash and h.pubkey = ?1 and h.direction = ?2 and h.medianTime between ?3 and ?4 "
+			+ "order by h.blockNumber")
+	List<Transaction> historyByTimes(String pubkey, Direction direction, Long from, Long to);
+
 	/**
 	 * Sent by transactions 
 	 * @param pubkey as String or PubKey 
 	 * @return
 	 */
-	default Stream<Transaction> streamTransactionSentBy(Object pubkey){
-		return streamAll().filter(t -> t.txSentBy(pubkey));
+	default List<Transaction> transactionsSentBy(Object pubkey){
+		return historyByBlocks(pubkey.toString(), Direction.SENT, 0, Integer.MAX_VALUE);
 	};
 	
 	/**
-	 * Received by transactions
+	 * Received by transactions, the issuers' change excluded
 	 * @param pubkey as String or PubKey 
 	 * @return
 	 */
-	default Stream<Transaction> streamTransactionReceivedBy(Object pubkey){
-		return streamAll().filter(t -> t.txReceivedBy(pubkey));
+	default List<Transaction> transactionsReceivedBy(Object pubkey){
+		return historyByBlocks(pubkey.toString(), Direction.RECEIVED, 0, Integer.MAX_VALUE);
 	};
 	
-
-
 	default Transaction findTransactionWithMultipleIssuers(){
 		return streamAll() // 
 				.filter(t -> t.issuers().size()>1) // 
@@ -0,0 +1,353 @@
+package juniter.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+import juniter.model.event.BlockSavedEvent;
+import juniter.repository.BlockRepository;
+
+/**
+ * The blocks buried below the fork window, kept fully loaded in memory
+ *
+ * <pre>
+ *  - a block deeper than juniter.blockcache.forkWindow under the head never changes : only those are cached
+ *  - Caffeine's W-TinyLFU, bounded by juniter.blockcache.bytes of estimated heap, ie: the raw document's length times a factor
+ *  - by number in the cache, by hash in a map kept in step by the removal listener, for graphql's blockByHash : a miss reads the index on block_hash
+ *  - a block committed at or below a cached one with another hash is a fork : every cached block from its number on is dropped
+ *  - a cached block is detached with its collections loaded, it can be serialized out of any session
+ *  - their JSON is written once, as is and gzipped, off heap within juniter.blockcache.jsonBytes, see {@link #json(int)}
+ *  - hits, misses, evictions and weight in {@link #stats()}, behind /blockchain/cache
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Service
+@ConditionalOnExpression("${juniter.blockcache.enabled:true}")
+public class BlockCache {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * heap bytes per char of the raw document : the entities, their Strings and
+	 * the collections holding them
+	 */
+	private static final int BYTES_PER_RAW_CHAR = 6;
+
+	private static final int BYTES_PER_BLOCK = 2048;
+
+	/**
+	 * What one layer of the cache did since startup
+	 */
+	public static class Stats {
+
+		private final long hits;
+		private final long misses;
+		private final double hitRate;
+		private final long evictions;
+		private final long entries;
+		private final long bytes;
+		private final long maxBytes;
+
+		Stats(long hits, long misses, double hitRate, long evictions, long entries, long bytes, long maxBytes) {
+			this.hits = hits;
+			this.misses = misses;
+			this.hitRate = hitRate;
+			this.evictions = evictions;
+			this.entries = entries;
+			this.bytes = bytes;
+			this.maxBytes = maxBytes;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public double getHitRate() {
+			return hitRate;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getEntries() {
+			return entries;
+		}
+
+		/**
+		 * @return the weight of the entries : the estimated heap of the blocks, the
+		 *         size of their JSON
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+
+		@Override
+		public String toString() {
+			return entries + " blocks cached, " + bytes / 1024 + "/" + maxBytes / 1024 + " KiB, hit rate "
+					+ Math.round(hitRate * 100) + "% (" + hits + "/" + (hits + misses) + "), " + evictions
+					+ " evicted";
+		}
+	}
+
+	/**
+	 * A block serialized once, UTF-8 and gzipped, in direct buffers
+	 */
+	public static final class Json {
+
+		private final String hash;
+		private final ByteBuffer plain;
+		private final ByteBuffer gzip;
+
+		Json(String hash, byte[] plain, byte[] gzip) {
+			this.hash = hash;
+			this.plain = ByteBuffer.allocateDirect(plain.length).put(plain).flip().asReadOnlyBuffer();
+			this.gzip = ByteBuffer.allocateDirect(gzip.length).put(gzip).flip().asReadOnlyBuffer();
+		}
+
+		/**
+		 * @return the block's hash, the content of a block never changes under it
+		 */
+		public String hash() {
+			return hash;
+		}
+
+		/**
+		 * @return a copy of the document, gzipped or not
+		 */
+		public byte[] bytes(boolean gzipped) {
+			var buffer = (gzipped ? gzip : plain).duplicate();
+			var res = new byte[buffer.remaining()];
+			buffer.get(res);
+			return res;
+		}
+
+		int size() {
+			return plain.capacity() + gzip.capacity();
+		}
+	}
+
+	@Autowired
+	private BlockRepository blockRepo;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	@Value("${juniter.blockcache.bytes:67108864}")
+	private long maxBytes;
+
+	@Value("${juniter.blockcache.jsonBytes:134217728}")
+	private long maxJsonBytes;
+
+	@Value("${juniter.blockcache.forkWindow:100}")
+	private int forkWindow;
+
+	private Cache<Integer, Block> byNumber;
+
+	private Cache<Integer, Json> jsons;
+
+	private final Map<String, Integer> byHash = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * the highest number ever cached, a block saved above it cannot fork a
+	 * cached one
+	 */
+	private volatile int highest = -1;
+
+	@PostConstruct
+	public void init() {
+		byNumber = Caffeine.newBuilder() //
+				.maximumWeight(maxBytes) //
+				.weigher((Integer number, Block block) -> weight(block)) //
+				.removalListener((Integer number, Block block, RemovalCause cause) -> {
+					if (block != null) {
+						byHash.remove(block.getHash(), number);
+					}
+				}) //
+				.recordStats() //
+				.build();
+		jsons = Caffeine.newBuilder() //
+				.maximumWeight(maxJsonBytes) //
+				.weigher((Integer number, Json json) -> json.size()) //
+				.recordStats() //
+				.build();
+	}
+
+	/**
+	 * @return the stored block, from the cache if it is buried enough
+	 */
+	public Optional<Block> block(int number) {
+		var cached = byNumber.getIfPresent(number);
+		if (cached != null)
+			return Optional.of(cached);
+
+		return read(() -> blockRepo.findTop1ByNumber(number));
+	}
+
+	/**
+	 * @return the stored block of that hash, from the cache if it is buried
+	 *         enough
+	 */
+	public Optional<Block> block(String hash) {
+		var number = byHash.get(hash);
+		var cached = number == null ? null : byNumber.getIfPresent(number);
+		if (cached != null && hash.equals(cached.getHash())) // byHash lags the removals
+			return Optional.of(cached);
+
+		return read(() -> blockRepo.findByHash(hash).stream().findFirst());
+	}
+
+	/**
+	 * @return the serialized block if it is buried enough, written once
+	 */
+	public Optional<Json> json(int number) {
+		var cached = jsons.getIfPresent(number);
+		if (cached != null)
+			return Optional.of(cached);
+
+		if (!immutable(number))
+			return Optional.empty();
+
+		return block(number).filter(block -> immutable(block.getNumber())).map(block -> {
+			var json = serialize(block);
+			jsons.put(number, json);
+			highest = Math.max(highest, number);
+			return json;
+		});
+	}
+
+	/**
+	 * @return the stats of the blocks, and of their JSON
+	 */
+	public Map<String, Stats> stats() {
+		var res = new LinkedHashMap<String, Stats>();
+		res.put("blocks", stats(byNumber, maxBytes));
+		res.put("json", stats(jsons, maxJsonBytes));
+		return res;
+	}
+
+	private static Stats stats(Cache<?, ?> cache, long maxBytes) {
+		var stats = cache.stats();
+		final long bytes = cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L);
+		return new Stats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+				cache.estimatedSize(), bytes, maxBytes);
+	}
+
+	/**
+	 * A block saved at or below a cached one forks the chain from there, unless
+	 * it is the cached block saved again. A block whose number is not cached
+	 * cannot be compared, it is taken as a fork.
+	 */
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onBlockSaved(BlockSavedEvent event) {
+		var block = event.getBlock();
+		var number = block.getNumber();
+		if (number == null || number > highest)
+			return;
+
+		var cached = byNumber.getIfPresent(number);
+		var json = jsons.getIfPresent(number);
+		final String known = cached != null ? cached.getHash() : json != null ? json.hash() : null;
+		if (known == null || !known.equals(block.getHash())) {
+			invalidateFrom(number);
+		}
+	}
+
+	/**
+	 * Drops the blocks from number on
+	 */
+	public void invalidateFrom(int number) {
+		var dropped = byNumber.asMap().keySet().removeIf(n -> n >= number);
+		dropped |= jsons.asMap().keySet().removeIf(n -> n >= number);
+		if (dropped) {
+			logger.info("Block " + number + " forks, the cached blocks from there on are dropped");
+		}
+	}
+
+	private interface Query {
+		Optional<Block> run();
+	}
+
+	/**
+	 * Loads every collection inside a read only transaction, caches what is
+	 * immutable
+	 */
+	private Optional<Block> read(Query query) {
+		var tx = new TransactionTemplate(txManager);
+		tx.setReadOnly(true);
+		return tx.execute(status -> query.run().map(block -> {
+			final int weight = weight(block); // loads the collections
+			if (immutable(block.getNumber()) && weight < maxBytes) {
+				byNumber.put(block.getNumber(), block);
+				byHash.put(block.getHash(), block.getNumber());
+				highest = Math.max(highest, block.getNumber());
+			}
+			return block;
+		}));
+	}
+
+	private Json serialize(Block block) {
+		try {
+			final var plain = mapper.writeValueAsBytes(block);
+			final var gzipped = new ByteArrayOutputStream(plain.length / 3);
+			try (var gzip = new GZIPOutputStream(gzipped)) {
+				gzip.write(plain);
+			}
+			return new Json(block.getHash(), plain, gzipped.toByteArray());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean immutable(int number) {
+		return number <= blockRepo.current() - forkWindow;
+	}
+
+	/**
+	 * Reads the whole document : loads the lazy collections, and sizes them
+	 */
+	private static int weight(Block block) {
+		final long bytes = BYTES_PER_BLOCK + (long) BYTES_PER_RAW_CHAR * block.toRaw(new StringBuilder(4096)).length();
+		return (int) Math.min(Integer.MAX_VALUE, bytes);
+	}
+
+}
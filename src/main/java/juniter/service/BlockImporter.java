@@ -0,0 +1,440 @@
+package juniter.service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.exception.TechnicalException;
+import juniter.model.Block;
+import juniter.model.event.BlockSavedEvent;
+import juniter.utils.Constants;
+
+/**
+ * Fast path for the initial import of the chain, bypassing the entity manager
+ *
+ * <pre>
+ *  - rows are streamed with COPY ... FROM STDIN on PostgreSQL, with JDBC batches anywhere else (H2 in the tests)
+ *  - ids are drawn from the pooled sequences Hibernate uses, so both can write to the same tables
+ *  - secondary indexes are dropped before the load and built once at the end
+ *  - every chunk goes through the {@link BlockValidator} before it is written
+ *  - a BlockSavedEvent is published for every committed block, as a repository save would
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Service
+public class BlockImporter {
+
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Tables written by the import and their columns, parents first
+	 */
+	private static final Map<String, String[]> TABLES = new LinkedHashMap<String, String[]>();
+
+	/**
+	 * Secondary indexes rebuilt after the load : name -> definition
+	 */
+	private static final Map<String, String> INDEXES = new LinkedHashMap<String, String>();
+
+	static {
+		TABLES.put("block", new String[] { "id", "version", "nonce", "number", "pow_min", "time", "median_time",
+				"members_count", "monetary_mass", "unitbase", "issuers_count", "issuers_frame", "issuers_frame_var",
+				"currency", "issuer", "signature", "block_hash", "parameters", "previous_hash", "previous_issuer",
+				"inner_hash", "dividend" });
+		TABLES.put("certification",
+				new String[] { "id", "certifier", "certified", "block_number", "signature" });
+		TABLES.put("transaction", new String[] { "id", "version", "currency", "locktime", "tx_hash", "b_number",
+				"bhash", "blockstamp_time", "comment" });
+		TABLES.put("block_certifications", new String[] { "block_id", "certifications_id" });
+		TABLES.put("block_transactions", new String[] { "block_id", "transactions_id" });
+		TABLES.put("tx_issuers", new String[] { "tx_id", "pubkey" });
+		TABLES.put("tx_inputs",
+				new String[] { "tx_id", "amount", "base", "type", "dsource", "d_blockid", "thash", "t_index" });
+		TABLES.put("tx_outputs", new String[] { "tx_id", "amount", "base", "output_condition" });
+		TABLES.put("tx_unlocks", new String[] { "tx_id", "id", "function" });
+		TABLES.put("tx_signatures", new String[] { "tx_id", "signature" });
+		TABLES.put("wot_identities",
+				new String[] { "container_block", "newidentity", "signature", "b_number", "bhash", "pseudo" });
+		TABLES.put("wot_joiners", new String[] { "container_block", "joiner_key", "signature", "b_number", "bhash",
+				"buid2", "pseudo" });
+		TABLES.put("wot_actives", new String[] { "container_block", "active", "signature", "b_number", "bhash",
+				"buid2", "pseudo" });
+		TABLES.put("wot_leavers", new String[] { "container_block", "leaver", "signature", "b_number", "bhash",
+				"buid2", "pseudo" });
+		TABLES.put("wot_revoked", new String[] { "container_block", "revoked", "signature" });
+		TABLES.put("wot_excluded", new String[] { "container_block", "joiner_key" });
+
+		INDEXES.put("idx_block_number", "block (number)");
+		INDEXES.put("idx_tx_hash", "transaction (tx_hash)");
+	}
+
+	@Value("${juniter.importer.chunk:1000}")
+	private int chunkSize;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+
+	@Autowired
+	private BlockValidator validator;
+
+	private final ObjectMapper jsonMapper = new ObjectMapper();
+
+	/**
+	 * Import every *.json block of a directory, in file name order
+	 *
+	 * @param dir ie: data/blocks
+	 * @return the number of imported blocks
+	 */
+	public int importDirectory(Path dir) throws IOException {
+		try (var files = Files.list(dir)) {
+			return importBlocks(files //
+					.filter(f -> f.getFileName().toString().endsWith(".json")) //
+					.sorted() //
+					.map(this::read));
+		}
+	}
+
+	/**
+	 * Import the blocks as they come, committing every chunk
+	 *
+	 * @param blocks ordered by number
+	 * @return the number of imported blocks
+	 */
+	public int importBlocks(Stream<Block> blocks) {
+		final long start = System.nanoTime();
+		int imported = 0;
+
+		try (var conn = dataSource.getConnection()) {
+			final boolean autoCommit = conn.getAutoCommit();
+			final boolean postgres = conn.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+			conn.setAutoCommit(false);
+
+			var sequences = new Sequences(conn, postgres);
+			dropIndexes(conn);
+			try (var rows = postgres ? new CopyRows(conn) : new BatchRows(conn)) {
+				var chunk = new ArrayList<Block>(chunkSize);
+				Block previous = null;
+				for (var it = blocks.iterator(); it.hasNext();) {
+					chunk.add(it.next());
+					if (chunk.size() == chunkSize || !it.hasNext()) {
+						var errors = validator.validate(previous, chunk);
+						if (!errors.isEmpty())
+							throw new TechnicalException("Invalid blocks after " + imported + " imported : " + errors);
+						previous = chunk.get(chunk.size() - 1);
+						for (var block : chunk) {
+							write(block, rows, sequences);
+						}
+						rows.flush();
+						conn.commit();
+						imported += chunk.size();
+						chunk.forEach(b -> publisher.publishEvent(new BlockSavedEvent(b)));
+						log.info("Imported " + imported + " blocks, up to " + chunk.get(chunk.size() - 1).getNumber());
+						chunk.clear();
+					}
+				}
+			} catch (SQLException | IOException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				createIndexes(conn, postgres);
+				conn.commit();
+				conn.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException | IOException e) {
+			throw new TechnicalException("Import failed after " + imported + " blocks", e);
+		}
+
+		var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		log.info("Imported " + imported + " blocks in " + elapsed + "ms");
+		return imported;
+	}
+
+	private Block read(Path file) {
+		try {
+			return jsonMapper.readValue(file.toFile(), Block.class);
+		} catch (IOException e) {
+			throw new TechnicalException("Could not parse " + file, e);
+		}
+	}
+
+	/**
+	 * One row per table, the values in the order of {@link #TABLES}
+	 */
+	private void write(Block block, Rows rows, Sequences sequences) throws SQLException {
+		final long blockId = sequences.next("block_seq");
+
+		rows.add("block", blockId, block.getVersion(), block.getNonce(), block.getNumber(), block.getPowMin(),
+				new Timestamp(block.getTime()), new Timestamp(block.getMedianTime()), block.getMembersCount(),
+				block.getMonetaryMass(), block.getUnitbase(), block.getIssuersCount(), block.getIssuersFrame(),
+				block.getIssuersFrameVar(), block.getCurrency(), block.getIssuer(), block.getSignature(),
+				block.getHash(), block.getParameters(), block.getPreviousHash(), block.getPreviousIssuer(),
+				block.getInner_hash(), block.getDividend());
+
+		for (var cert : block.certifications) {
+			final long certId = sequences.next("certification_seq");
+			rows.add("certification", certId, cert.getCertifier().getPubkey(), cert.getCertified().getPubkey(),
+					cert.getBlockNumber(), cert.getSignature());
+			rows.add("block_certifications", blockId, certId);
+		}
+
+		for (var tx : block.getTransactions()) {
+			final long txId = sequences.next("transaction_seq");
+			var stamp = tx.getBlockstamp().split("-");
+			rows.add("transaction", txId, tx.getVersion(), tx.getCurrency(), tx.getLocktime(), tx.getHash(),
+					Integer.valueOf(stamp[0]), stamp[1], tx.getBlockstampTime(), tx.getComment());
+			rows.add("block_transactions", blockId, txId);
+
+			for (var issuer : tx.issuers()) {
+				rows.add("tx_issuers", txId, issuer.getPubkey());
+			}
+			for (var input : tx.inputs()) {
+				rows.add("tx_inputs", txId, input.Amount(), input.Base(), input.Type().name(),
+						input.Dsource().getPubkey(), input.dBlockID(), input.tHash().getHash(), input.tIndex());
+			}
+			for (var output : tx.outputs()) {
+				rows.add("tx_outputs", txId, output.Amount(), output.Base(), output.Function());
+			}
+			for (var unlock : tx.unlocks()) {
+				rows.add("tx_unlocks", txId, unlock.Id(), unlock.Function());
+			}
+			for (var signature : tx.getSignatures()) {
+				rows.add("tx_signatures", txId, signature);
+			}
+		}
+
+		// the wot documents are only exposed in their raw form : PUBKEY:SIGNATURE:BUID:...
+		for (var identity : block.getIdentities()) {
+			var f = identity.split(":");
+			var buid = f[2].split("-");
+			rows.add("wot_identities", blockId, f[0], f[1], Integer.valueOf(buid[0]), buid[1], f[3]);
+		}
+		membership(rows, "wot_joiners", blockId, block.getJoiners());
+		membership(rows, "wot_actives", blockId, block.getActives());
+		membership(rows, "wot_leavers", blockId, block.getLeavers());
+		for (var revoked : block.getRevoked()) {
+			var f = revoked.split(":");
+			rows.add("wot_revoked", blockId, f[0], f[1]);
+		}
+		for (var excluded : block.getExcluded()) {
+			rows.add("wot_excluded", blockId, excluded);
+		}
+	}
+
+	/**
+	 * PUBKEY:SIGNATURE:BUID1:BUID2:PSEUDO
+	 */
+	private void membership(Rows rows, String table, long blockId, List<String> docs) throws SQLException {
+		for (var doc : docs) {
+			var f = doc.split(":");
+			var buid = f[2].split("-");
+			rows.add(table, blockId, f[0], f[1], Integer.valueOf(buid[0]), buid[1], f[3], f[4]);
+		}
+	}
+
+	private void dropIndexes(Connection conn) throws SQLException {
+		try (var st = conn.createStatement()) {
+			for (var index : INDEXES.keySet()) {
+				st.execute("DROP INDEX IF EXISTS " + index);
+			}
+		}
+		conn.commit();
+	}
+
+	private void createIndexes(Connection conn, boolean postgres) throws SQLException {
+		try (var st = conn.createStatement()) {
+			for (var index : INDEXES.entrySet()) {
+				st.execute("CREATE INDEX IF NOT EXISTS " + index.getKey() + " ON " + index.getValue());
+			}
+			if (postgres) {
+				for (var table : TABLES.keySet()) {
+					st.execute("ANALYZE " + table);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands out ids the way Hibernate's pooled optimizer does : each nextval v
+	 * reserves ]v - allocationSize, v]
+	 */
+	private static class Sequences {
+
+		private final Connection conn;
+		private final boolean postgres;
+		private final Map<String, long[]> ranges = new HashMap<String, long[]>();
+
+		Sequences(Connection conn, boolean postgres) {
+			this.conn = conn;
+			this.postgres = postgres;
+		}
+
+		long next(String sequence) throws SQLException {
+			var range = ranges.computeIfAbsent(sequence, s -> new long[] { 1, 0 });
+			if (range[0] > range[1]) {
+				var sql = postgres ? "SELECT nextval('" + sequence + "')" : "SELECT NEXT VALUE FOR " + sequence;
+				try (var st = conn.createStatement(); var rs = st.executeQuery(sql)) {
+					rs.next();
+					range[1] = rs.getLong(1);
+				}
+				range[0] = Math.max(1, range[1] - Constants.Defaults.ID_ALLOCATION_SIZE + 1);
+			}
+			return range[0]++;
+		}
+	}
+
+	private interface Rows extends AutoCloseable {
+
+		void add(String table, Object... values) throws SQLException;
+
+		/**
+		 * Send everything added so far, parents first
+		 */
+		void flush() throws SQLException, IOException;
+
+		@Override
+		void close() throws SQLException;
+	}
+
+	/**
+	 * Buffers the rows in the COPY text format, one buffer per table
+	 */
+	private static class CopyRows implements Rows {
+
+		private final CopyManager copy;
+		private final Map<String, StringBuilder> buffers = new HashMap<String, StringBuilder>();
+
+		CopyRows(Connection conn) throws SQLException {
+			copy = new CopyManager(conn.unwrap(BaseConnection.class));
+		}
+
+		@Override
+		public void add(String table, Object... values) {
+			var sb = buffers.computeIfAbsent(table, t -> new StringBuilder(1 << 16));
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					sb.append('\t');
+				if (values[i] == null) {
+					sb.append("\\N");
+				} else {
+					escape(sb, values[i].toString());
+				}
+			}
+			sb.append('\n');
+		}
+
+		private static void escape(StringBuilder sb, String value) {
+			for (int i = 0; i < value.length(); i++) {
+				var c = value.charAt(i);
+				switch (c) {
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				default:
+					sb.append(c);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws SQLException, IOException {
+			for (var table : TABLES.entrySet()) {
+				var sb = buffers.get(table.getKey());
+				if (sb == null || sb.length() == 0)
+					continue;
+				copy.copyIn("COPY " + table.getKey() + " (" + String.join(", ", table.getValue()) + ") FROM STDIN",
+						new StringReader(sb.toString()));
+				sb.setLength(0);
+			}
+		}
+
+		@Override
+		public void close() {
+			buffers.clear();
+		}
+	}
+
+	/**
+	 * Portable fallback : one prepared statement per table, executed as a batch
+	 */
+	private static class BatchRows implements Rows {
+
+		private final Connection conn;
+		private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+		BatchRows(Connection conn) {
+			this.conn = conn;
+		}
+
+		@Override
+		public void add(String table, Object... values) throws SQLException {
+			var ps = statements.get(table);
+			if (ps == null) {
+				var columns = TABLES.get(table);
+				ps = conn.prepareStatement("INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+						+ Stream.of(columns).map(c -> "?").collect(Collectors.joining(", ")) + ")");
+				statements.put(table, ps);
+			}
+			for (int i = 0; i < values.length; i++) {
+				ps.setObject(i + 1, values[i]);
+			}
+			ps.addBatch();
+		}
+
+		@Override
+		public void flush() throws SQLException {
+			for (var table : TABLES.keySet()) {
+				var ps = statements.get(table);
+				if (ps != null)
+					ps.executeBatch();
+			}
+		}
+
+		@Override
+		public void close() throws SQLException {
+			for (var ps : statements.values()) {
+				ps.close();
+			}
+			statements.clear();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package juniter.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import juniter.model.Block;
+import juniter.service.SignatureVerifier.Signed;
+import juniter.service.index.BalanceLedger;
+import juniter.utils.Validator;
+
+/**
+ * Checks the synced blocks before they are stored
+ *
+ * <pre>
+ *  - per block : inner_hash and hash, spread over a ForkJoin pool
+ *  - the issuers' signatures : one batch per call to the {@link SignatureVerifier}
+ *  - per chain : consecutive numbers, previousHash, previousIssuer and monetaryMass, in one cheap sequential pass
+ *  - signatures need libsodium, they are skipped if it cannot be loaded
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Service
+public class BlockValidator {
+
+	@Value("${juniter.validation.enabled:true}")
+	private boolean enabled;
+
+	@Value("${juniter.validation.signatures:true}")
+	private boolean signatures;
+
+	/**
+	 * 0 for one thread per core
+	 */
+	@Value("${juniter.validation.parallelism:0}")
+	private int parallelism;
+
+	private ForkJoinPool pool;
+
+	@Autowired
+	private SignatureVerifier verifier;
+
+	@PostConstruct
+	public void init() {
+		pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param previous the block stored just before blocks.get(0), null if unknown
+	 * @param blocks   consecutive blocks sorted by number
+	 * @return what is wrong with them, empty if they can be stored
+	 */
+	public List<String> validate(Block previous, List<Block> blocks) {
+		if (!enabled || blocks.isEmpty())
+			return List.of();
+
+		var errors = chain(previous, blocks);
+		errors.addAll(pool.submit(() -> blocks.parallelStream() //
+				.flatMap(b -> check(b).stream()) //
+				.collect(Collectors.toList())) //
+				.join());
+		if (signatures && verifier.isAvailable()) {
+			errors.addAll(signatures(blocks));
+		}
+		return errors;
+	}
+
+	/**
+	 * The issuers' signatures, as one batch
+	 */
+	public List<String> signatures(List<Block> blocks) {
+		var batch = blocks.stream() //
+				.map(b -> new Signed(b.getIssuer(), Validator.signedPart(b), b.getSignature())) //
+				.collect(Collectors.toList());
+		var valid = verifier.verify(batch);
+
+		var errors = new ArrayList<String>(0);
+		for (int i = 0; i < valid.length; i++) {
+			if (!valid[i]) {
+				errors.add("block " + blocks.get(i).getNumber() + " is not signed by " + blocks.get(i).getIssuer());
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * The linkage invariants, without hashing anything
+	 *
+	 * @param previous null to only check the links inside blocks, and that a
+	 *                 genesis has no predecessor
+	 */
+	public List<String> chain(Block previous, List<Block> blocks) {
+		var errors = new ArrayList<String>();
+		var prev = previous;
+		for (var block : blocks) {
+			if (prev == null) {
+				if (block.getNumber() == 0 && block.getPreviousHash() != null) {
+					errors.add("block 0 has a previousHash");
+				}
+			} else {
+				if (block.getNumber() != prev.getNumber() + 1) {
+					errors.add("block " + block.getNumber() + " follows block " + prev.getNumber());
+				}
+				if (!Objects.equals(block.getPreviousHash(), prev.getHash())) {
+					errors.add("block " + block.getNumber() + " previousHash " + block.getPreviousHash() + " is not "
+							+ prev.getHash());
+				}
+				if (!Objects.equals(block.getPreviousIssuer(), prev.getIssuer())) {
+					errors.add("block " + block.getNumber() + " previousIssuer " + block.getPreviousIssuer()
+							+ " is not " + prev.getIssuer());
+				}
+				var mass = monetaryMass(prev, block);
+				if (mass != null && !mass.equals(block.getMonetaryMass())) {
+					errors.add("block " + block.getNumber() + " monetaryMass " + block.getMonetaryMass() + " is not "
+							+ mass);
+				}
+			}
+			prev = block;
+		}
+		return errors;
+	}
+
+	/**
+	 * The previous mass plus this block's dividend for each of its members
+	 *
+	 * @return null if either mass is unknown
+	 */
+	static Long monetaryMass(Block previous, Block block) {
+		if (previous.getMonetaryMass() == null || block.getMonetaryMass() == null)
+			return null;
+		if (block.getDividend() == null)
+			return previous.getMonetaryMass();
+		if (block.getMembersCount() == null)
+			return null;
+
+		final int base = block.getUnitbase() == null ? 0 : block.getUnitbase();
+		return previous.getMonetaryMass() + BalanceLedger.value(block.getDividend(), base) * block.getMembersCount();
+	}
+
+	/**
+	 * The hashes of a single block
+	 */
+	public List<String> check(Block block) {
+		var errors = new ArrayList<String>(0);
+
+		var innerHash = Validator.innerHash(block);
+		if (!innerHash.equals(block.getInner_hash())) {
+			errors.add("block " + block.getNumber() + " inner_hash " + block.getInner_hash() + " computes to "
+					+ innerHash);
+		}
+
+		var hash = Validator.hash(block);
+		if (!hash.equals(block.getHash())) {
+			errors.add("block " + block.getNumber() + " hash " + block.getHash() + " computes to " + hash);
+		}
+		return errors;
+	}
+
+}
@@ -0,0 +1,226 @@
+package juniter.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Non blocking GETs of JSON documents to other nodes
+ *
+ * <pre>
+ *  - on the pooled client of {@link juniter.conf.HTTPConfiguration} : hundreds of requests in flight on a few IO threads
+ *  - bodies are asked gzipped, and parsed on juniter.http.parsers threads, never on the IO ones
+ *  - {@link #retry(Supplier)} : juniter.http.retries more attempts, each after a random delay below juniter.http.backoff ms times 2^attempt
+ *  - {@link #hedged(List, Function)} : the same document asked to one more node every juniter.http.hedge ms, or as soon as one fails ; the first answer wins, the others are cancelled
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Component
+public class PeerClient {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	@Autowired
+	private CloseableHttpAsyncClient client;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Value("${juniter.http.retries:2}")
+	private int retries;
+
+	@Value("${juniter.http.backoff:200}")
+	private int backoffMillis;
+
+	@Value("${juniter.http.hedge:1000}")
+	private int hedgeMillis;
+
+	/**
+	 * 0 for one thread per core
+	 */
+	@Value("${juniter.http.parsers:0}")
+	private int parsers;
+
+	private ExecutorService parsing;
+
+	@PostConstruct
+	public void init() {
+		parsing = Executors.newFixedThreadPool(parsers > 0 ? parsers : Runtime.getRuntime().availableProcessors(),
+				r -> {
+					var t = new Thread(r, "PeerClient-parser");
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		parsing.shutdownNow();
+	}
+
+	public <T> CompletableFuture<T> get(String url, Class<T> type) {
+		return get(url, mapper.getTypeFactory().constructType(type));
+	}
+
+	public <T> CompletableFuture<T> get(String url, TypeReference<T> type) {
+		return get(url, mapper.getTypeFactory().constructType(type));
+	}
+
+	/**
+	 * @return the parsed document, cancelling it or completing it exceptionally
+	 *         aborts the request
+	 */
+	public <T> CompletableFuture<T> get(String url, JavaType type) {
+		var request = new HttpGet(url);
+		request.setHeader(HttpHeaders.ACCEPT, "application/json");
+		request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+		var res = new CompletableFuture<T>();
+		var pending = client.execute(request, new FutureCallback<HttpResponse>() {
+
+			@Override
+			public void completed(HttpResponse response) {
+				final int status = response.getStatusLine().getStatusCode();
+				if (status != 200) {
+					res.completeExceptionally(new IOException(url + " answered " + response.getStatusLine()));
+					return;
+				}
+				parsing.execute(() -> {
+					try (var body = gzipped(response) ? new GZIPInputStream(response.getEntity().getContent())
+							: response.getEntity().getContent()) {
+						res.complete(mapper.readValue(body, type));
+					} catch (Exception e) {
+						res.completeExceptionally(e);
+					}
+				});
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				res.completeExceptionally(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				res.cancel(false);
+			}
+		});
+		res.whenComplete((doc, ex) -> {
+			if (ex != null) { // cancelled, or timed out by the caller
+				pending.cancel(true);
+			}
+		});
+		return res;
+	}
+
+	/**
+	 * @param request sent again on failure
+	 */
+	public <T> CompletableFuture<T> retry(Supplier<CompletableFuture<T>> request) {
+		return retry(request, 0);
+	}
+
+	/**
+	 * @param nodes   to ask, in order
+	 * @param request what to ask a node
+	 * @return the first answer, failed only if every node failed
+	 */
+	public <T> CompletableFuture<T> hedged(List<String> nodes, Function<String, CompletableFuture<T>> request) {
+		if (nodes.isEmpty())
+			return CompletableFuture.failedFuture(new IllegalArgumentException("no node to ask"));
+
+		var res = new CompletableFuture<T>();
+		var sent = new AtomicReferenceArray<CompletableFuture<T>>(nodes.size());
+		var next = new AtomicInteger();
+		var failed = new AtomicInteger();
+
+		var send = new Runnable() {
+			@Override
+			public void run() {
+				final int i = next.getAndIncrement();
+				if (i >= nodes.size() || res.isDone())
+					return;
+
+				CompletableFuture<T> attempt = request.apply(nodes.get(i));
+				sent.set(i, attempt);
+				if (res.isDone()) { // won meanwhile, the loop below may have missed it
+					attempt.cancel(true);
+					return;
+				}
+				attempt.whenComplete((doc, ex) -> {
+					if (ex == null) {
+						res.complete(doc);
+					} else if (failed.incrementAndGet() == nodes.size()) {
+						res.completeExceptionally(ex);
+					} else {
+						run(); // no need to wait for the hedge
+					}
+				});
+				if (i + 1 < nodes.size()) {
+					CompletableFuture.delayedExecutor(hedgeMillis, TimeUnit.MILLISECONDS, parsing).execute(this);
+				}
+			}
+		};
+		send.run();
+
+		res.whenComplete((doc, ex) -> {
+			for (int i = 0; i < sent.length(); i++) {
+				var attempt = sent.get(i);
+				if (attempt != null) {
+					attempt.cancel(true);
+				}
+			}
+		});
+		return res;
+	}
+
+	private static boolean gzipped(HttpResponse response) {
+		var encoding = response.getEntity().getContentEncoding();
+		return encoding != null && encoding.getValue().contains("gzip");
+	}
+
+	private <T> CompletableFuture<T> retry(Supplier<CompletableFuture<T>> request, int attempt) {
+		return request.get().handle((doc, ex) -> {
+			if (ex == null)
+				return CompletableFuture.completedFuture(doc);
+			if (attempt >= retries)
+				return CompletableFuture.<T>failedFuture(ex);
+
+			final long delay = ThreadLocalRandom.current().nextLong((long) backoffMillis << attempt) + 1;
+			logger.debug("Attempt " + (attempt + 1) + " failed : " + ex.getMessage() + ", next in " + delay + "ms");
+			return CompletableFuture.runAsync(() -> {
+			}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, parsing)) //
+					.thenCompose(x -> retry(request, attempt + 1));
+		}).thenCompose(Function.identity());
+	}
+
+}
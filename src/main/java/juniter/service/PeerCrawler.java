@@ -0,0 +1,294 @@
+package juniter.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import juniter.model.bma.PeerDoc;
+import juniter.model.net.EndPoint;
+import juniter.model.net.EndPointType;
+import juniter.model.net.Peer;
+import juniter.utils.Constants;
+
+/**
+ * Discovers the network : every node's /network/peers, breadth first from
+ * {@link Constants.Defaults#NODE}
+ *
+ * <pre>
+ *  - at most juniter.crawler.concurrency requests in flight, none of them holds a thread while it waits
+ *  - each request gives up after juniter.crawler.timeout ms, the whole crawl after juniter.crawler.deadline seconds with what it found so far : the requests still in flight are then cancelled
+ *  - peers are deduplicated by pubkey, the most advanced document of each is kept ; a node is asked once per URL
+ *  - only BMAS endpoints on 443 are crawled, as in {@link juniter.repository.EndPointsRepository#streamUsableEndpoints()}
+ *  - the peers' heads feed the {@link PeerRegistry}, the progress is readable any time through {@link #current()}
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Component
+@ConditionalOnExpression("${juniter.bma.enabled:false}")
+public class PeerCrawler {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * One walk of the network, readable while it runs
+	 */
+	public static final class Crawl {
+
+		private final long start = System.nanoTime();
+		private final ArrayDeque<String> queue = new ArrayDeque<String>();
+		private final Set<String> seen = ConcurrentHashMap.newKeySet();
+		private final Map<String, Peer> peers = new ConcurrentHashMap<String, Peer>();
+		private final List<PeerDoc> docs = new ArrayList<PeerDoc>();
+		private final CompletableFuture<Crawl> done = new CompletableFuture<Crawl>();
+		private final Set<CompletableFuture<?>> requests = ConcurrentHashMap.newKeySet();
+		private int inFlight;
+		private int asked;
+		private int answered;
+		private int failed;
+		private volatile boolean partial;
+		private volatile long elapsed = -1;
+
+		public synchronized int getAsked() {
+			return asked;
+		}
+
+		public synchronized int getAnswered() {
+			return answered;
+		}
+
+		public synchronized int getFailed() {
+			return failed;
+		}
+
+		public synchronized int getPending() {
+			return queue.size() + inFlight;
+		}
+
+		public int getPeers() {
+			return peers.size();
+		}
+
+		public long getElapsedMillis() {
+			return elapsed >= 0 ? elapsed : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+
+		/**
+		 * @return nodes answered per second
+		 */
+		public synchronized double getRate() {
+			return answered * 1000.0 / Math.max(1, getElapsedMillis());
+		}
+
+		public boolean isDone() {
+			return done.isDone();
+		}
+
+		/**
+		 * @return true if the deadline stopped the crawl before every node was asked
+		 */
+		public boolean isPartial() {
+			return partial;
+		}
+
+		/**
+		 * @return one peer per pubkey
+		 */
+		public Collection<Peer> peers() {
+			return peers.values();
+		}
+
+		/**
+		 * @return the documents of the nodes that answered, in the order they did
+		 */
+		public synchronized List<PeerDoc> docs() {
+			return new ArrayList<PeerDoc>(docs);
+		}
+
+		@Override
+		public String toString() {
+			return getAnswered() + "/" + getAsked() + " nodes answered, " + getFailed() + " failed, " + getPeers()
+					+ " peers in " + getElapsedMillis() + "ms, " + Math.round(getRate()) + " nodes/s"
+					+ (partial ? ", partial" : "");
+		}
+
+		synchronized boolean enqueue(String url) {
+			if (done.isDone() || !seen.add(url))
+				return false;
+			queue.add(url);
+			return true;
+		}
+
+		synchronized String next(int concurrency) {
+			if (done.isDone() || inFlight >= concurrency || queue.isEmpty())
+				return null;
+			inFlight++;
+			asked++;
+			return queue.poll();
+		}
+
+		synchronized void answered(PeerDoc doc) {
+			inFlight--;
+			if (doc == null) {
+				failed++;
+			} else {
+				answered++;
+				docs.add(doc);
+			}
+		}
+
+		/**
+		 * Keeps the request until it completes, so that finishing the crawl cancels
+		 * it
+		 */
+		void track(CompletableFuture<?> request) {
+			requests.add(request);
+			request.whenComplete((doc, ex) -> requests.remove(request));
+			if (done.isDone()) {
+				request.cancel(true);
+			}
+		}
+
+		synchronized boolean exhausted() {
+			return inFlight == 0 && queue.isEmpty();
+		}
+
+		void finish(boolean byDeadline) {
+			synchronized (this) {
+				if (done.isDone())
+					return;
+				partial = byDeadline && !exhausted();
+				elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			}
+			done.complete(this);
+			requests.forEach(request -> request.cancel(true));
+		}
+	}
+
+	@Autowired
+	private PeerClient http;
+
+	@Autowired
+	private PeerRegistry peerRegistry;
+
+	@Value("${juniter.crawler.concurrency:64}")
+	private int concurrency;
+
+	@Value("${juniter.crawler.timeout:5000}")
+	private int timeoutMillis;
+
+	@Value("${juniter.crawler.deadline:30}")
+	private int deadlineSeconds;
+
+	private volatile Crawl current;
+
+	/**
+	 * Starts a crawl, or joins the running one
+	 *
+	 * @return completed when every reachable node answered or failed, or at the
+	 *         deadline
+	 */
+	public synchronized CompletableFuture<Crawl> crawl() {
+		if (current != null && !current.isDone())
+			return current.done;
+
+		final var crawl = new Crawl();
+		current = crawl;
+		logger.info("Crawling the network from " + Constants.Defaults.NODE + ", " + concurrency + " requests at once");
+
+		CompletableFuture.delayedExecutor(deadlineSeconds, TimeUnit.SECONDS).execute(() -> crawl.finish(true));
+		crawl.done.thenAccept(c -> logger.info("Crawl finished : " + c));
+
+		crawl.enqueue(Constants.Defaults.NODE);
+		pump(crawl);
+		return crawl.done;
+	}
+
+	/**
+	 * @return the running or the last crawl, null if none ever started
+	 */
+	public Crawl current() {
+		return current;
+	}
+
+	/**
+	 * Sends as many requests as the concurrency allows
+	 */
+	private void pump(Crawl crawl) {
+		String url;
+		while ((url = crawl.next(concurrency)) != null) {
+			final var node = url;
+			final var request = peerRegistry.timedAsync(node, () -> http.get(node + "network/peers", PeerDoc.class) //
+					.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+			crawl.track(request);
+			request.whenCompleteAsync((doc, ex) -> {
+				if (crawl.isDone())
+					return; // cancelled at the deadline, the report stays as it was then
+				if (ex != null) {
+					logger.debug("Crawl : " + node + " failed, " + ex.getMessage());
+				}
+				visit(crawl, node, ex == null ? doc : null);
+				pump(crawl);
+			});
+		}
+		if (crawl.exhausted()) {
+			crawl.finish(false);
+		}
+	}
+
+	private void visit(Crawl crawl, String node, PeerDoc doc) {
+		if (doc != null) {
+			doc.url = node;
+			for (var peer : doc.getPeers()) {
+				if (peer.getPubkey() == null || peer.getBlock() == null)
+					continue;
+
+				crawl.peers.merge(peer.getPubkey(), peer, (known, found) -> number(found) > number(known) ? found : known);
+				var url = url(peer);
+				if (url != null) {
+					peerRegistry.head(url, number(peer));
+					crawl.enqueue(url);
+				}
+			}
+		}
+		crawl.answered(doc);
+	}
+
+	/**
+	 * @return the URL of the peer's first BMAS endpoint on 443, null if it has
+	 *         none
+	 */
+	private static String url(Peer peer) {
+		return peer.endpoints().stream() //
+				.filter(ep -> ep.api() == EndPointType.BMAS && "443".equals(ep.getPort()) && ep.getDomain() != null) //
+				.map(EndPoint::url) //
+				.findFirst() //
+				.orElse(null);
+	}
+
+	/**
+	 * @return the number of the peer's block, -1 if it cannot be read
+	 */
+	private static int number(Peer peer) {
+		try {
+			return Integer.parseInt(peer.getBlock().split("-")[0]);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,322 @@
+package juniter.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import juniter.repository.EndPointsRepository;
+import juniter.utils.Constants;
+
+/**
+ * The known nodes, kept in memory with how well they answer
+ *
+ * <pre>
+ *  - per node : EWMA of the latency and of the error rate, its last known head, the requests in flight
+ *  - {@link #pick(Set)} draws two nodes at random and keeps the cheaper one, the power of two choices
+ *  - the cost : latency times (1 + in flight), divided by the success rate ; a node more than juniter.network.lag blocks behind the best head is only used if no other is
+ *  - every juniter.network.refresh seconds : the endpoints are reloaded from the database and each node's /blockchain/current is probed, all at once
+ *  - callers report their own requests through {@link #timed(String, Supplier)} or {@link #timedAsync(String, Supplier)}
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Component
+@ConditionalOnExpression("${juniter.bma.enabled:false}")
+public class PeerRegistry {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * weight of the last sample in the averages
+	 */
+	private static final double ALPHA = 0.3;
+
+	/**
+	 * the latency assumed of a node never heard of, so that it gets tried
+	 */
+	private static final double UNKNOWN_MILLIS = 500;
+
+	/**
+	 * How one node answers
+	 */
+	public static final class Node {
+
+		private final String url;
+		private double latency = UNKNOWN_MILLIS;
+		private double errors;
+		private int head = -1;
+		private long lastSeen;
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		Node(String url) {
+			this.url = url;
+		}
+
+		synchronized void record(long millis, boolean ok) {
+			if (ok) {
+				latency = latency + ALPHA * (millis - latency);
+				lastSeen = System.currentTimeMillis();
+			}
+			errors = errors + ALPHA * ((ok ? 0 : 1) - errors);
+		}
+
+		synchronized void head(int number) {
+			head = Math.max(head, number);
+		}
+
+		synchronized double cost() {
+			return latency * (1 + inFlight.get()) / Math.max(0.05, 1 - errors);
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public synchronized long getLatency() {
+			return Math.round(latency);
+		}
+
+		public synchronized double getErrorRate() {
+			return errors;
+		}
+
+		public synchronized int getHead() {
+			return head;
+		}
+
+		public synchronized long getLastSeen() {
+			return lastSeen;
+		}
+
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		@Override
+		public String toString() {
+			return url + " " + getLatency() + "ms " + Math.round(getErrorRate() * 100) + "% errors, head " + getHead();
+		}
+	}
+
+	@Autowired
+	private EndPointsRepository endPointRepo;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	@Value("${juniter.network.refresh:60}")
+	private int refreshSeconds;
+
+	@Value("${juniter.network.lag:5}")
+	private int lag;
+
+	@Autowired
+	private PeerClient http;
+
+	private final Map<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+
+	private ScheduledExecutorService refresher;
+
+	{
+		nodes.put(Constants.Defaults.NODE, new Node(Constants.Defaults.NODE));
+	}
+
+	@PostConstruct
+	public void init() {
+		refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+			var t = new Thread(r, "PeerRegistry-refresh");
+			t.setDaemon(true);
+			return t;
+		});
+		refresher.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refresher.shutdownNow();
+	}
+
+	/**
+	 * @param exclude nodes not to pick, ie: the ones already tried, may be empty
+	 * @return the cheaper of two nodes drawn among the up to date ones, any other
+	 *         node if none is, the default node if every one is excluded
+	 */
+	public String pick(Set<String> exclude) {
+		var candidates = nodes.values().stream() //
+				.filter(n -> !exclude.contains(n.url)) //
+				.collect(Collectors.toList());
+		if (candidates.isEmpty())
+			return Constants.Defaults.NODE;
+
+		final int best = bestHead();
+		var upToDate = candidates.stream() //
+				.filter(n -> n.getHead() >= best - lag) //
+				.collect(Collectors.toList());
+		return twoChoices(upToDate.isEmpty() ? candidates : upToDate).url;
+	}
+
+	/**
+	 * @return up to count distinct nodes, each from {@link #pick(Set)} among the
+	 *         ones not picked yet
+	 */
+	public List<String> pick(int count) {
+		var res = new ArrayList<String>();
+		while (res.size() < count) {
+			var node = pick(new HashSet<String>(res));
+			if (res.contains(node))
+				break;
+			res.add(node);
+		}
+		return res;
+	}
+
+	/**
+	 * @return the nodes' URL, cheapest first
+	 */
+	public List<String> ranked() {
+		return nodes.values().stream() //
+				.sorted(Comparator.comparingDouble(Node::cost)) //
+				.map(Node::getUrl) //
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the nodes, cheapest first
+	 */
+	public List<Node> stats() {
+		return nodes.values().stream() //
+				.sorted(Comparator.comparingDouble(Node::cost)) //
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Runs a request to the node at url, its latency and outcome are recorded. An
+	 * exception or a null result is an error.
+	 */
+	public <T> T timed(String url, Supplier<T> request) {
+		var node = nodes.computeIfAbsent(url, Node::new);
+		node.inFlight.incrementAndGet();
+		final long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			var res = request.get();
+			ok = res != null;
+			return res;
+		} finally {
+			node.inFlight.decrementAndGet();
+			node.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), ok);
+		}
+	}
+
+	/**
+	 * Same as {@link #timed(String, Supplier)} for a non blocking request, a
+	 * cancelled one is not recorded
+	 */
+	public <T> CompletableFuture<T> timedAsync(String url, Supplier<CompletableFuture<T>> request) {
+		var node = nodes.computeIfAbsent(url, Node::new);
+		node.inFlight.incrementAndGet();
+		final long start = System.nanoTime();
+		var res = request.get();
+		res.whenComplete((doc, ex) -> {
+			node.inFlight.decrementAndGet();
+			if (!res.isCancelled()) {
+				node.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), ex == null && doc != null);
+			}
+		});
+		return res;
+	}
+
+	/**
+	 * @param url    of the node
+	 * @param number the highest block it was seen with
+	 */
+	public void head(String url, int number) {
+		nodes.computeIfAbsent(url, Node::new).head(number);
+	}
+
+	/**
+	 * Adds the nodes not known yet
+	 */
+	public void addAll(Collection<String> urls) {
+		urls.forEach(url -> nodes.computeIfAbsent(url, Node::new));
+	}
+
+	/**
+	 * Reloads the endpoints, then probes every node's head
+	 */
+	void refresh() {
+		try {
+			var tx = new TransactionTemplate(txManager);
+			tx.setReadOnly(true);
+			addAll(tx.execute(status -> endPointRepo.enpointsURL()));
+
+			var probes = new ArrayList<CompletableFuture<Void>>();
+			for (var url : new ArrayList<String>(nodes.keySet())) {
+				probes.add(probe(url));
+			}
+			CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).join();
+			logger.info("Probed " + nodes.size() + " nodes, best head " + bestHead() + ", fastest "
+					+ stats().stream().limit(3).map(Node::toString).collect(Collectors.joining(", ")));
+		} catch (Exception e) {
+			logger.warn("Peers refresh failed : " + e.getMessage());
+		}
+	}
+
+	private CompletableFuture<Void> probe(String url) {
+		return timedAsync(url, () -> http.get(url + (url.endsWith("/") ? "" : "/") + "blockchain/current", JsonNode.class)) //
+				.handle((current, ex) -> {
+					if (ex == null) {
+						head(url, current.path("number").asInt(-1));
+					} else {
+						logger.debug("Probe of " + url + " failed : " + ex.getMessage());
+					}
+					return null;
+				});
+	}
+
+	private int bestHead() {
+		return nodes.values().stream().mapToInt(Node::getHead).max().orElse(-1);
+	}
+
+	private static Node twoChoices(List<Node> candidates) {
+		final int n = candidates.size();
+		if (n == 1)
+			return candidates.get(0);
+
+		var random = ThreadLocalRandom.current();
+		final int i = random.nextInt(n);
+		final int j = (i + 1 + random.nextInt(n - 1)) % n; // any other one
+		var a = candidates.get(i);
+		var b = candidates.get(j);
+		return a.cost() <= b.cost() ? a : b;
+	}
+
+}
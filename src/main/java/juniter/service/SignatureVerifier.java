@@ -0,0 +1,194 @@
+package juniter.service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.abstractj.kalium.NaCl;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import juniter.utils.CryptoUtils;
+import juniter.utils.PubKeyCache;
+
+/**
+ * Ed25519 verification of batches of signed documents, through libsodium
+ *
+ * <pre>
+ *  - a batch is split across a ForkJoin pool, one verification per task
+ *  - decoded public keys come from the {@link PubKeyCache}, the same members sign most documents
+ *  - counts and throughput are logged every juniter.signatures.report seconds of activity, see {@link #stats()}
+ *  - {@link #isAvailable()} is false when libsodium cannot be loaded
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Service
+public class SignatureVerifier {
+
+	private static final Logger log = LogManager.getLogger();
+
+	private static final byte[] INVALID = new byte[0];
+
+	/**
+	 * What to check : the issuer's pubkey (base 58), the signed bytes and the
+	 * signature (base 64)
+	 */
+	public static class Signed {
+
+		private final String pubkey;
+		private final byte[] message;
+		private final String signature;
+
+		public Signed(String pubkey, byte[] message, String signature) {
+			this.pubkey = pubkey;
+			this.message = message;
+			this.signature = signature;
+		}
+
+		public String getPubkey() {
+			return pubkey;
+		}
+
+		public byte[] getMessage() {
+			return message;
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+	}
+
+	/**
+	 * 0 for one thread per core
+	 */
+	@Value("${juniter.signatures.parallelism:0}")
+	private int parallelism;
+
+	@Value("${juniter.signatures.report:10}")
+	private int reportSeconds;
+
+	private ForkJoinPool pool;
+
+	private final LongAdder verified = new LongAdder();
+	private final LongAdder invalid = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+
+	private volatile Boolean available;
+
+	@PostConstruct
+	public void init() {
+		pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return whether libsodium could be loaded, tried once
+	 */
+	public boolean isAvailable() {
+		if (available == null) {
+			synchronized (this) {
+				if (available == null) {
+					try {
+						NaCl.sodium();
+						available = true;
+					} catch (LinkageError e) {
+						log.error("libsodium could not be loaded, signatures cannot be verified", e);
+						available = false;
+					}
+				}
+			}
+		}
+		return available;
+	}
+
+	public boolean verify(Signed signed) {
+		return verify(List.of(signed))[0];
+	}
+
+	/**
+	 * @return for each document of the batch, in order, whether its signature is
+	 *         valid
+	 */
+	public boolean[] verify(List<Signed> batch) {
+		final long start = System.nanoTime();
+		var res = new boolean[batch.size()];
+		if (batch.size() == 1) {
+			res[0] = check(batch.get(0));
+		} else {
+			pool.submit(() -> IntStream.range(0, batch.size()).parallel() //
+					.forEach(i -> res[i] = check(batch.get(i)))) //
+					.join();
+		}
+		nanos.add(System.nanoTime() - start);
+		verified.add(batch.size());
+		report();
+		return res;
+	}
+
+	/**
+	 * @return verified count, invalid count, rate per second of verification time
+	 */
+	public String stats() {
+		final long count = verified.sum();
+		final long elapsed = nanos.sum();
+		final long rate = elapsed == 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / elapsed;
+		return count + " signatures verified, " + invalid.sum() + " invalid, " + rate + "/s, "
+				+ PubKeyCache.SHARED.stats();
+	}
+
+	private boolean check(Signed signed) {
+		var key = publicKey(signed.getPubkey());
+		final boolean valid;
+		if (key == INVALID) {
+			valid = false;
+		} else {
+			byte[] signature;
+			try {
+				signature = CryptoUtils.decodeBase64(signed.getSignature());
+			} catch (RuntimeException e) {
+				signature = INVALID;
+			}
+			valid = CryptoUtils.verify(signed.getMessage(), signature, key);
+		}
+		if (!valid) {
+			invalid.increment();
+		}
+		return valid;
+	}
+
+	private byte[] publicKey(String pubkey) {
+		if (pubkey == null)
+			return INVALID;
+
+		try {
+			return CryptoUtils.decodePubKey(pubkey);
+		} catch (RuntimeException e) {
+			return INVALID;
+		}
+	}
+
+	private void report() {
+		final long now = System.nanoTime();
+		final long last = lastReport.get();
+		if (now - last > TimeUnit.SECONDS.toNanos(reportSeconds) && lastReport.compareAndSet(last, now)) {
+			log.info(stats());
+		}
+	}
+
+}
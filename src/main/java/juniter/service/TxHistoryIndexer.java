@@ -0,0 +1,111 @@
+package juniter.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import juniter.model.Block;
+import juniter.model.event.BlockSavedEvent;
+import juniter.model.persistence.tx.Transaction;
+import juniter.model.persistence.tx.TxHistoryEntry;
+import juniter.model.persistence.tx.TxHistoryEntry.Direction;
+import juniter.repository.TxHistoryRepository;
+import juniter.repository.TxRepository;
+
+/**
+ * Keeps the tx_history index in sync with the stored blocks
+ *
+ * <pre>
+ *  - a saved block replaces its entries, unless they already index the same transactions : a fork without any drops them
+ *  - a database filled before the index existed is back-filled once at startup
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Service
+public class TxHistoryIndexer {
+
+	private static final Logger log = LogManager.getLogger();
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Autowired
+	private TxHistoryRepository historyRepo;
+
+	@Autowired
+	private TxRepository txRepo;
+
+	@Transactional
+	@EventListener
+	public void onBlockSaved(BlockSavedEvent event) {
+		index(event.getBlock());
+	}
+
+	@Transactional
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfill() {
+		if (historyRepo.count() > 0 || txRepo.count() == 0)
+			return;
+
+		log.info("Back-filling tx_history from the stored transactions");
+		try (var blocks = em
+				.createQuery("select b from Block b where b.transactions is not empty order by b.number", Block.class)
+				.getResultStream()) {
+			blocks.forEach(b -> {
+				index(b);
+				em.flush();
+				em.detach(b);
+			});
+		}
+		log.info("Back-filled " + historyRepo.count() + " tx_history entries");
+	}
+
+	private void index(Block block) {
+		if (block.getNumber() == null)
+			return;
+
+		var hashes = block.getTransactions().stream().map(Transaction::getHash).collect(Collectors.toSet());
+		var indexed = historyRepo.txHashesByBlockNumber(block.getNumber());
+		if (hashes.equals(new HashSet<>(indexed)))
+			return; // the same transactions, or none before and after
+
+		historyRepo.deleteByBlockNumber(block.getNumber());
+		historyRepo.saveAll(entries(block));
+	}
+
+	/**
+	 * The issuers send, the other SIG() recipients of the outputs receive
+	 */
+	static List<TxHistoryEntry> entries(Block block) {
+		var res = new ArrayList<TxHistoryEntry>();
+		for (var tx : block.getTransactions()) {
+			var issuers = tx.getIssuers();
+			for (var issuer : issuers) {
+				res.add(new TxHistoryEntry(issuer, Direction.SENT, block.getNumber(), block.getMedianTime(),
+						tx.getHash()));
+			}
+			for (var recipient : tx.recipients()) {
+				if (!issuers.contains(recipient)) {
+					res.add(new TxHistoryEntry(recipient, Direction.RECEIVED, block.getNumber(),
+							block.getMedianTime(), tx.getHash()));
+				}
+			}
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,267 @@
+package juniter.service.async;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import juniter.model.Block;
+import juniter.repository.BlockRepository;
+import juniter.service.BlockValidator;
+import juniter.service.PeerClient;
+import juniter.service.PeerRegistry;
+import juniter.utils.Constants;
+
+/**
+ * Synchronize the whole chain using /blockchain/blocks/[count]/[from]
+ *
+ * <pre>
+ *  - windows of blocks are fetched from several peers at once, through the non blocking {@link PeerClient}
+ *  - the number of windows in flight is bounded (memory) and so is the number of requests per peer
+ *  - each window goes to a fast and up to date peer, see {@link PeerRegistry#pick(java.util.Set)}
+ *  - each window is validated as it arrives, a failed or invalid one is fetched again from another peer, juniter.bulkloader.retries times
+ *  - a single writer persists the windows in order so the chain never has holes, and checks they link up
+ *  - the sync resumes from the last stored block
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@ConditionalOnExpression("${juniter.bma.enabled:false} && ${juniter.bulkloader.enabled:false}")
+@Component
+public class BulkLoader implements CommandLineRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+	private static final TypeReference<List<Block>> BLOCKS = new TypeReference<List<Block>>() {
+	};
+
+	/**
+	 * how long a window waits for its peer to answer another one
+	 */
+	private static final int BUSY_MILLIS = 50;
+
+	@Value("${juniter.bulkloader.window:" + Constants.Defaults.BULK_BATCH_SIZE + "}")
+	private int windowSize;
+
+	@Value("${juniter.bulkloader.inflight:16}")
+	private int maxInFlight;
+
+	@Value("${juniter.bulkloader.perPeer:2}")
+	private int perPeer;
+
+	@Value("${juniter.bulkloader.retries:3}")
+	private int retries;
+
+	@Autowired
+	private BlockRepository repository;
+
+	@Autowired
+	private PeerClient http;
+
+	@Autowired
+	private BlockValidator validator;
+
+	@Autowired
+	private PeerRegistry peerRegistry;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	private final Map<String, Semaphore> peerPermits = new ConcurrentHashMap<String, Semaphore>();
+
+	@Override
+	public void run(String... args) throws Exception {
+		var writer = new Thread(this::sync, "BulkLoader-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Fetch every block from the last stored one up to the remote current block.
+	 * The calling thread is the writer.
+	 */
+	public void sync() {
+		final int from = repository.current() + 1;
+		final int to = remoteCurrent();
+
+		if (to < from) {
+			logger.info("Nothing to sync, local head " + (from - 1) + " remote head " + to);
+			return;
+		}
+		logger.info("Syncing blocks " + from + " to " + to + " by windows of " + windowSize);
+
+		var validators = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+			var t = new Thread(r, "BulkLoader-validator");
+			t.setDaemon(true);
+			return t;
+		});
+
+		var inFlight = new Semaphore(maxInFlight);
+		var ready = new ConcurrentHashMap<Integer, List<Block>>();
+		var signals = new LinkedBlockingQueue<Integer>();
+		var failed = new AtomicBoolean(false);
+		var stored = new AtomicInteger(0);
+		var start = System.nanoTime();
+
+		// producer : send windows while the in flight budget allows it, none holds a
+		// thread while it waits for a peer
+		var producer = new Thread(() -> {
+			try {
+				for (int w = from; w <= to && !failed.get(); w += windowSize) {
+					inFlight.acquire();
+					final int window = w;
+					final int count = Math.min(windowSize, to - window + 1);
+					fetchWindow(window, count, new HashSet<String>(), 0, validators).whenComplete((blocks, ex) -> {
+						try {
+							if (ex != null || blocks == null) {
+								failed.set(true);
+							} else {
+								ready.put(window, blocks);
+							}
+						} finally {
+							signals.add(window); // never leave the writer waiting
+						}
+					});
+				}
+			} catch (InterruptedException e) {
+				logger.error(Constants.Logs.INTERRUPTED);
+				Thread.currentThread().interrupt();
+			}
+		}, "BulkLoader-producer");
+		producer.setDaemon(true);
+		producer.start();
+
+		// writer : persist the windows in order
+		int next = from;
+		Block last = repository.findTop1ByNumber(from - 1).orElse(null);
+		try {
+			while (next <= to && !failed.get()) {
+				signals.take();
+				List<Block> blocks;
+				while ((blocks = ready.remove(next)) != null) {
+					var broken = validator.chain(last, blocks.subList(0, 1));
+					if (!broken.isEmpty()) {
+						broken.forEach(logger::error);
+						failed.set(true);
+						break;
+					}
+					repository.saveAllInBatch(blocks);
+					last = blocks.get(blocks.size() - 1);
+					next += blocks.size();
+					inFlight.release();
+					report(stored.addAndGet(blocks.size()), start, next - 1, to);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.error(Constants.Logs.INTERRUPTED);
+			Thread.currentThread().interrupt();
+		} finally {
+			validators.shutdownNow();
+			producer.interrupt();
+		}
+
+		if (failed.get()) {
+			logger.error("Sync stopped at block " + (next - 1) + ", it will resume from there on next run");
+		} else {
+			logger.info("Sync finished at block " + (next - 1));
+		}
+	}
+
+	/**
+	 * Fetch a window from a peer picked by the registry, switching peer on each
+	 * attempt : the only retry layer, the requests themselves are sent once. A
+	 * peer already answering perPeer windows is asked again a bit later.
+	 *
+	 * @param tried      the peers that failed this window
+	 * @param validators where the blocks are checked, off the HTTP client's threads
+	 * @return the blocks sorted by number, null if every attempt failed
+	 */
+	private CompletableFuture<List<Block>> fetchWindow(int from, int count, Set<String> tried, int attempt,
+			Executor validators) {
+		var peer = peerRegistry.pick(tried);
+		var permits = peerPermits.computeIfAbsent(peer, p -> new Semaphore(perPeer));
+		if (!permits.tryAcquire())
+			return CompletableFuture.runAsync(() -> {
+			}, CompletableFuture.delayedExecutor(BUSY_MILLIS, TimeUnit.MILLISECONDS)) //
+					.thenCompose(x -> fetchWindow(from, count, tried, attempt, validators));
+
+		tried.add(peer);
+		var url = peer + (peer.endsWith("/") ? "" : "/") + "blockchain/blocks/" + count + "/" + from;
+		return peerRegistry.timedAsync(peer, () -> http.get(url, BLOCKS)) //
+				.whenComplete((blocks, ex) -> permits.release()) //
+				.handleAsync((blocks, ex) -> {
+					if (ex != null) {
+						logger.warn("Window " + from + "+" + count + " failed on " + peer + " : " + ex.getMessage());
+						return null;
+					}
+					return checked(peer, from, count, blocks);
+				}, validators) //
+				.thenCompose(blocks -> blocks != null || attempt >= retries ? CompletableFuture.completedFuture(blocks)
+						: fetchWindow(from, count, tried, attempt + 1, validators));
+	}
+
+	/**
+	 * @return the blocks sorted by number, null if some are missing or invalid
+	 */
+	private List<Block> checked(String peer, int from, int count, List<Block> blocks) {
+		if (blocks == null || blocks.size() != count) {
+			logger.warn("Incomplete window " + from + "+" + count + " from " + peer);
+			return null;
+		}
+
+		peerRegistry.head(peer, from + count - 1);
+		var sorted = blocks.stream() //
+				.sorted(Comparator.comparing(Block::getNumber)) //
+				.collect(Collectors.toCollection(ArrayList::new));
+		var errors = validator.validate(null, sorted);
+		if (!errors.isEmpty()) {
+			logger.warn("Invalid window " + from + "+" + count + " from " + peer + " : " + errors);
+			return null;
+		}
+		return sorted;
+	}
+
+	private int remoteCurrent() {
+		var url = Constants.Defaults.NODE + "blockchain/current";
+		try {
+			return restTemplate.getForObject(url, Block.class).getNumber();
+		} catch (Exception e) {
+			logger.error("Could not reach " + url, e);
+			return -1;
+		}
+	}
+
+	private void report(int stored, long start, int at, int to) {
+		var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		if (elapsed == 0)
+			return;
+		var rate = stored * 1000L / elapsed;
+		var eta = rate == 0 ? "?" : ((to - at) / rate) + "s";
+		logger.info("Stored block " + at + "/" + to + " - " + rate + " blocks/sec - ETA " + eta);
+	}
+
+}
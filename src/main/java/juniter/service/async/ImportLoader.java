@@ -0,0 +1,101 @@
+package juniter.service.async;
+
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import juniter.exception.TechnicalException;
+import juniter.model.Block;
+import juniter.repository.BlockRepository;
+import juniter.service.BlockImporter;
+import juniter.service.rest.BlockchainService;
+import juniter.utils.Constants;
+
+/**
+ * Initial import of an empty database through the {@link BlockImporter}.
+ *
+ * <pre>
+ *  - source "network" streams windows of /blockchain/blocks/[count]/[from] from the default node
+ *  - any other source is read as a directory of *.json blocks, ie: data/blocks
+ * </pre>
+ *
+ * It runs before the other loaders, which then resume from the imported head
+ *
+ * @author ben
+ *
+ */
+@ConditionalOnExpression("${juniter.importer.enabled:false}")
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ImportLoader implements CommandLineRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImportLoader.class);
+
+	@Value("${juniter.importer.source:network}")
+	private String source;
+
+	@Value("${juniter.bulkloader.window:" + Constants.Defaults.BULK_BATCH_SIZE + "}")
+	private int windowSize;
+
+	@Autowired
+	private BlockRepository repository;
+
+	@Autowired
+	private BlockImporter importer;
+
+	@Autowired(required = false)
+	private BlockchainService blockchainService;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@Override
+	public void run(String... args) throws Exception {
+		if (repository.current() >= 0) {
+			logger.info("Blocks already stored, skipping the import");
+			return;
+		}
+
+		if ("network".equals(source)) {
+			if (blockchainService == null) {
+				logger.error("Network import requires juniter.bma.enabled");
+				return;
+			}
+			importer.importBlocks(network());
+		} else {
+			importer.importDirectory(Paths.get(source));
+		}
+	}
+
+	/**
+	 * Lazily fetch the chain window by window, up to the remote current block
+	 */
+	private Stream<Block> network() {
+		final int to = restTemplate.getForObject(Constants.Defaults.NODE + "blockchain/current", Block.class)
+				.getNumber();
+		logger.info("Importing blocks 0 to " + to + " from " + Constants.Defaults.NODE);
+
+		return IntStream.iterate(0, w -> w <= to, w -> w + windowSize) //
+				.mapToObj(w -> {
+					final int count = Math.min(windowSize, to - w + 1);
+					var blocks = blockchainService
+							.fetchBlocks(Constants.Defaults.NODE + "blockchain/blocks/" + count + "/" + w);
+					if (blocks == null || blocks.size() != count)
+						throw new TechnicalException("Incomplete window " + w + "+" + count);
+					return blocks;
+				}) //
+				.flatMap(blocks -> blocks.stream().sorted((a, b) -> a.getNumber().compareTo(b.getNumber())));
+	}
+
+}
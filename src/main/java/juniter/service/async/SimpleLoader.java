@@ -4,17 +4,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
-import juniter.model.Block;
 import juniter.model.bma.WithWrapper;
+import juniter.service.index.WithIndex;
 import juniter.service.rest.BlockchainService;
 import juniter.utils.Constants;
 
@@ -29,7 +29,11 @@ public class SimpleLoader implements CommandLineRunner {
 	@Autowired
 	BlockchainService blockchainService;
 	
-	private  RestTemplate restTemplate = new RestTemplate();
+	@Autowired
+	WithIndex withIndex;
+
+	@Autowired
+	private RestTemplate restTemplate;
 
 	@Override
 	public void run(String... args) throws Exception {
@@ -41,46 +45,23 @@ public class SimpleLoader implements CommandLineRunner {
 		logger.info("Elapsed time: " + elapsed + "ms");
 	}
 
-	@Transactional
+	/**
+	 * Union of the remote /with/ lists, minus the blocks already stored
+	 */
 	private List<Integer> fetchUsefullBlocks() {
 		String url = Constants.Defaults.NODE  + "blockchain/with/";
 		logger.info("Loading from : " + url);
-		List<Integer> res =  new ArrayList<Integer>();
+		var wanted = new MutableRoaringBitmap();
 		try {
+			for (var category : WithIndex.Category.values()) {
+				var ww = restTemplate.getForObject(url + category.getPath(), WithWrapper.class);
+				logger.info(" - Fetching " + category.getPath() + " List : " + ww.getResult().getBlocks().size());
+				ww.getResult().getBlocks().forEach(wanted::add);
+			}
 
-			var ww = restTemplate.getForObject(url + "tx", WithWrapper.class);
-			logger.info(" - Fetching Tx List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url + "certs", WithWrapper.class);
-			logger.info(" - Fetching Certs List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "newcomers", WithWrapper.class);
-			logger.info(" - Fetching NewComers List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "leavers", WithWrapper.class);
-			logger.info(" - Fetching Leavers List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "revoked", WithWrapper.class);
-			logger.info(" - Fetching Revoked List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "excluded", WithWrapper.class);
-			logger.info(" - Fetching Excluded List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "actives", WithWrapper.class);
-			logger.info(" - Fetching Actives List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			ww = restTemplate.getForObject(url+ "ud", WithWrapper.class);
-			logger.info(" - Fetching UD List : " + ww.getResult().getBlocks().size());
-			res.addAll(ww.getResult().getBlocks());
-			
-			return res.stream().distinct().sorted().collect(toList());
+			var missing = withIndex.missing(wanted);
+			logger.info(" - " + wanted.getCardinality() + " useful blocks, " + missing.getCardinality() + " missing");
+			return WithIndex.toList(missing);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -6,6 +6,7 @@ import juniter.model.Block;
 import juniter.model.persistence.tx.Transaction;
 import juniter.repository.BlockRepository;
 import juniter.repository.TxRepository;
+import juniter.service.BlockCache;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -14,7 +15,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class BlockService  {
@@ -22,15 +22,19 @@ public class BlockService  {
 	@Autowired
     private BlockRepository blockRepository;
 
+	@Autowired(required = false)
+    private BlockCache blockCache;
+
 
     /**
-     * return 10 blocks
-     * @param number
+     * return the 50 latest blocks, a bounded range query rather than a stream of
+     * the whole table cut short
      * @return
      */
-    @GraphQLQuery(name = "blocks", description="stream latest cars")
-    public Stream<Block> getCars() {
-        return blockRepository.streamAllBlocks().limit(50L);
+    @GraphQLQuery(name = "blocks", description="latest blocks")
+    public List<Block> getCars() {
+        var current = blockRepository.current();
+        return blockRepository.findRange(Math.max(0, current - 49), current);
     }
     
     /**
@@ -40,7 +44,18 @@ public class BlockService  {
      */
     @GraphQLQuery(name = "block", description="return the valid block for the given number")
     public Block getBlock(@GraphQLArgument(name = "number") Integer number) {
-        return blockRepository.findTop1ByNumber(number).get();
+        return (blockCache != null ? blockCache.block(number) : blockRepository.findTop1ByNumber(number)).get();
+    }
+
+    /**
+     * return a block
+     * @param hash
+     * @return
+     */
+    @GraphQLQuery(name = "blockByHash", description="return the stored block of the given hash")
+    public Block getBlockByHash(@GraphQLArgument(name = "hash") String hash) {
+        return (blockCache != null ? blockCache.block(hash) : blockRepository.findByHash(hash).stream().findFirst())
+                .orElse(null);
     }
  
 
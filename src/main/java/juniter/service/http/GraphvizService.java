@@ -17,6 +17,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import juniter.model.bma.WotCerts;
 import juniter.model.persistence.PubKey;
 import juniter.model.persistence.tx.Transaction;
 import juniter.model.persistence.tx.TxOutput;
@@ -41,6 +43,7 @@ import juniter.model.persistence.tx.TxType;
 import juniter.repository.BlockRepository;
 import juniter.repository.CertsRepository;
 import juniter.repository.TxRepository;
+import juniter.service.index.WotGraph;
 import juniter.service.rest.BlockchainService;
 
 @Controller
@@ -84,6 +87,9 @@ public class GraphvizService {
 	@Autowired
 	private CertsRepository certsRepo;
 
+	@Autowired(required = false)
+	private WotGraph wot;
+
 	@Autowired
 	private BlockRepository blockRepo;
 
@@ -314,10 +320,11 @@ public class GraphvizService {
 	public String blockGraph(Integer blockNumber, Map<String, String[]> extraParams) {
 		
 		final Integer RANGE = extraParams.containsKey("range") ? Integer.valueOf(extraParams.get("range")[0]) : 2;
+		final int current = blockRepo.current();
 		
 		var blocks = IntStream.range(blockNumber - RANGE, blockNumber + RANGE + 1)//
 				.filter(i -> i >= 0) //
-				.filter(i -> i <= blockRepo.current()) //
+				.filter(i -> i <= current) //
 				.mapToObj(b -> blockService.block(b))//
 				.sorted((b1, b2) -> b1.getNumber().compareTo(b2.getNumber()))//
 				.collect(toList());
@@ -436,13 +443,13 @@ public class GraphvizService {
 
 		res += IntStream.range(blockNumber - RANGE, blockNumber + RANGE)//
 				.filter(i -> i >= 0) //
-				.filter(i -> i <= blockRepo.current()) //
+				.filter(i -> i < current) //
 				.mapToObj(i -> "_" + i + "hash -> _" + (i + 1) + "phash [weight=0, style=dotted];")//
 				.collect(joining("\n\t"));
 		res += "\n\t";
 		res += IntStream.range(blockNumber - RANGE, blockNumber + RANGE)//
 				.filter(i -> i >= 0) //
-				.filter(i -> i <= blockRepo.current()) //
+				.filter(i -> i < current) //
 				.mapToObj(i -> "_" + i + "issuer -> _" + (i + 1) + "pissuer [weight=0, style=dotted];")//
 				.collect(joining("\n\t"));
 		res += "\n\n\t";
@@ -451,7 +458,8 @@ public class GraphvizService {
 
 		// print the edges
 		res += IntStream.range(blockNumber - RANGE, blockNumber + RANGE)//
-				.filter(i -> i >= 0).limit(blockRepo.current())
+				.filter(i -> i >= 0) //
+				.filter(i -> i < current) //
 				.mapToObj(i -> "_" + i + " -> _" + (i + 1) + " [weight=10];")//
 				.collect(joining("\n\t\t"));
 
@@ -475,9 +483,9 @@ public class GraphvizService {
 		String res = "digraph{\n\t" //
 				+ "graph [rankdir=LR ]\n\n\t";
 
-		// load data
-		var certified = certsRepo.streamCertifiedBy(pk).collect(toList());
-		var certifier = certsRepo.streamCertifiersOf(pk).collect(toList());
+		// load data, from the wot graph unless it is disabled
+		var certified = certs(pk, false);
+		var certifier = certs(pk, true);
 
 		res += "subgraph cluster_Identity{\n\t\t" //
 				+ "style=filled;\n\t\t" //
@@ -497,7 +505,7 @@ public class GraphvizService {
 
 		// print node
 		res += certified.stream().map(c -> {
-			var pubk = c.getCertified().getPubkey();
+			var pubk = c.getPubkey();
 			return "_" + pubk + " [label=\"" + mini(pubk) + "\", URL=\"/graphviz/svg/certs/" + pubk + "\"];";
 		}).collect(joining("\n\t\t"));
 
@@ -511,20 +519,41 @@ public class GraphvizService {
 
 		// print node
 		res += certifier.stream().map(c -> {
-			var pubk = c.getCertifier().getPubkey();
+			var pubk = c.getPubkey();
 			return "__" + pubk + " [label=\"" + mini(pubk) + "\", URL=\"/graphviz/svg/certs/" + pubk + "\"];";
 		}).collect(joining("\n\t\t"));
 
 		res += "\n\t}\n\t";
 
 		// print edges
-		var allNodes = Stream.concat(certified.stream(), certifier.stream());
-		res += allNodes.map(cert -> "_" + cert.getCertified() + " -> " + "__" + cert.getCertifier()
-				+ " [URL=\"/graphviz/svg/block/" + cert.getBlockNumber() + "\"]").collect(joining(";\n\t"));
+		var allNodes = Stream.concat( //
+				certified.stream().map(c -> "_" + c.getPubkey() + " -> " + "__" + pk + " [URL=\"/graphviz/svg/block/"
+						+ c.getCertTime().get("block") + "\"]"), //
+				certifier.stream().map(c -> "_" + pk + " -> " + "__" + c.getPubkey() + " [URL=\"/graphviz/svg/block/"
+						+ c.getCertTime().get("block") + "\"]"));
+		res += allNodes.collect(joining(";\n\t"));
 
 		return res + "\n}";
 	}
 
+	/**
+	 * @param certifiersOf the certifications pk received, otherwise the ones it
+	 *                     issued
+	 */
+	private List<WotCerts.Cert> certs(String pk, boolean certifiersOf) {
+		if (wot != null) {
+			var res = certifiersOf ? wot.certifiersOf(pk) : wot.certifiedBy(pk);
+			return res == null ? List.of() : res.getCertifications();
+		}
+
+		var stream = certifiersOf ? certsRepo.streamCertifiersOf(pk) : certsRepo.streamCertifiedBy(pk);
+		try (stream) {
+			return stream.map(c -> new WotCerts.Cert( //
+					(certifiersOf ? c.getCertifier() : c.getCertified()).getPubkey(), null, false, false,
+					c.getBlockNumber(), null, -1, null, c.getSignature())).collect(toList());
+		}
+	}
+
 	/**
 	 * Fail safe command execution
 	 * 
@@ -0,0 +1,216 @@
+package juniter.service.index;
+
+import java.util.Arrays;
+
+/**
+ * Balances per pubkey and monetary mass, block after block, in primitive
+ * arrays indexed by {@link juniter.model.compact.Key#id()}
+ *
+ * <pre>
+ *  - dividends are not written per member : one cumulated amount per dividend block, and each key's membership intervals
+ *  - each key's moves, spent inputs and received outputs, are appended as (block, cumulated amount)
+ *  - balance at block n : two binary searches, plus one per membership interval
+ *  - the monetary mass after each dividend block, to check Block.getMonetaryMass in O(1)
+ *  - everything is ordered by block number : undoing a fork is truncating above it
+ * </pre>
+ *
+ * Amounts are in cents, ie: amount * 10^base. Not thread safe, the
+ * {@link SourcesIndex} owning it guards it with its lock.
+ *
+ * @author ben
+ *
+ */
+public class BalanceLedger {
+
+	private static final int OPEN = Integer.MAX_VALUE;
+
+	private static final int[] NO_BLOCKS = new int[0];
+
+	private int[] dividendBlocks = new int[64];
+
+	/**
+	 * what one member received in dividends, up to each dividend block
+	 */
+	private long[] dividendCumulated = new long[64];
+
+	private long[] massAfter = new long[64];
+
+	private int dividends;
+
+	/**
+	 * per key id, [start, end) pairs, end is OPEN while the key is a member
+	 */
+	private int[][] memberships = new int[1024][];
+
+	private int[] membershipLength = new int[1024];
+
+	private int[][] moveBlocks = new int[1024][];
+
+	private long[][] moveCumulated = new long[1024][];
+
+	private int[] moves = new int[1024];
+
+	public static long value(int amount, int base) {
+		long res = amount;
+		for (int i = 0; i < base; i++) {
+			res *= 10;
+		}
+		return res;
+	}
+
+	/**
+	 * id is a member from block on, its dividend included
+	 */
+	public void join(int id, int block) {
+		ensure(id);
+		var intervals = memberships[id];
+		final int length = membershipLength[id];
+		if (intervals == null || intervals.length == length) {
+			intervals = memberships[id] = intervals == null ? new int[2] : Arrays.copyOf(intervals, length * 2);
+		}
+		intervals[length] = block;
+		intervals[length + 1] = OPEN;
+		membershipLength[id] = length + 2;
+	}
+
+	/**
+	 * id is not a member anymore from block on, its dividend excluded
+	 */
+	public void exclude(int id, int block) {
+		ensure(id);
+		final int length = membershipLength[id];
+		if (length > 0 && memberships[id][length - 1] == OPEN) {
+			memberships[id][length - 1] = block;
+		}
+	}
+
+	/**
+	 * @param value   the dividend of block, in cents
+	 * @param members how many received it
+	 */
+	public void dividend(int block, long value, int members) {
+		if (dividends == dividendBlocks.length) {
+			dividendBlocks = Arrays.copyOf(dividendBlocks, dividends * 2);
+			dividendCumulated = Arrays.copyOf(dividendCumulated, dividends * 2);
+			massAfter = Arrays.copyOf(massAfter, dividends * 2);
+		}
+		final boolean first = dividends == 0;
+		dividendBlocks[dividends] = block;
+		dividendCumulated[dividends] = (first ? 0 : dividendCumulated[dividends - 1]) + value;
+		massAfter[dividends] = (first ? 0 : massAfter[dividends - 1]) + value * members;
+		dividends++;
+	}
+
+	/**
+	 * @param delta cents received, negative when spent
+	 */
+	public void move(int id, int block, long delta) {
+		ensure(id);
+		final int count = moves[id];
+		if (count > 0 && moveBlocks[id][count - 1] == block) {
+			moveCumulated[id][count - 1] += delta;
+			return;
+		}
+		if (moveBlocks[id] == null || moveBlocks[id].length == count) {
+			final int capacity = count == 0 ? 4 : count * 2;
+			moveBlocks[id] = moveBlocks[id] == null ? new int[capacity] : Arrays.copyOf(moveBlocks[id], capacity);
+			moveCumulated[id] = moveCumulated[id] == null ? new long[capacity]
+					: Arrays.copyOf(moveCumulated[id], capacity);
+		}
+		moveBlocks[id][count] = block;
+		moveCumulated[id][count] = (count == 0 ? 0 : moveCumulated[id][count - 1]) + delta;
+		moves[id] = count + 1;
+	}
+
+	/**
+	 * @return the cents id owned once block was applied
+	 */
+	public long balance(int id, int block) {
+		if (id < 0 || id >= moves.length)
+			return 0;
+
+		long res = 0;
+		final int move = last(moveBlocks[id] == null ? NO_BLOCKS : moveBlocks[id], moves[id], block);
+		if (move >= 0) {
+			res += moveCumulated[id][move];
+		}
+
+		final var intervals = memberships[id];
+		for (int i = 0; i < membershipLength[id]; i += 2) {
+			final int start = intervals[i];
+			final int end = Math.min(intervals[i + 1] == OPEN ? OPEN : intervals[i + 1] - 1, block);
+			if (end >= start) {
+				res += dividendsUpTo(end) - dividendsUpTo(start - 1);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return the monetary mass once block was applied
+	 */
+	public long mass(int block) {
+		final int i = last(dividendBlocks, dividends, block);
+		return i < 0 ? 0 : massAfter[i];
+	}
+
+	/**
+	 * Forgets what happened above block
+	 */
+	public void truncate(int block) {
+		while (dividends > 0 && dividendBlocks[dividends - 1] > block) {
+			dividends--;
+		}
+		for (int id = 0; id < moves.length; id++) {
+			while (moves[id] > 0 && moveBlocks[id][moves[id] - 1] > block) {
+				moves[id]--;
+			}
+			while (membershipLength[id] > 0 && memberships[id][membershipLength[id] - 2] > block) {
+				membershipLength[id] -= 2;
+			}
+			final int length = membershipLength[id];
+			if (length > 0 && memberships[id][length - 1] != OPEN && memberships[id][length - 1] > block) {
+				memberships[id][length - 1] = OPEN;
+			}
+		}
+	}
+
+	public void clear() {
+		dividends = 0;
+		Arrays.fill(memberships, null);
+		Arrays.fill(membershipLength, 0);
+		Arrays.fill(moveBlocks, null);
+		Arrays.fill(moveCumulated, null);
+		Arrays.fill(moves, 0);
+	}
+
+	private long dividendsUpTo(int block) {
+		final int i = last(dividendBlocks, dividends, block);
+		return i < 0 ? 0 : dividendCumulated[i];
+	}
+
+	/**
+	 * @return the index of the last of the count first blocks not above block,
+	 *         -1 if there is none
+	 */
+	private static int last(int[] blocks, int count, int block) {
+		int i = Arrays.binarySearch(blocks, 0, count, block);
+		if (i >= 0) {
+			return i;
+		}
+		return -i - 2;
+	}
+
+	private void ensure(int id) {
+		if (id < moves.length)
+			return;
+
+		final int capacity = Math.max(id + 1, moves.length * 2);
+		memberships = Arrays.copyOf(memberships, capacity);
+		membershipLength = Arrays.copyOf(membershipLength, capacity);
+		moveBlocks = Arrays.copyOf(moveBlocks, capacity);
+		moveCumulated = Arrays.copyOf(moveCumulated, capacity);
+		moves = Arrays.copyOf(moves, capacity);
+	}
+
+}
@@ -0,0 +1,229 @@
+package juniter.service.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+/**
+ * The distance rule : a member must be reached by xpercent of the sentries
+ * through at most stepMax certifications
+ *
+ * <pre>
+ *  - sentries : members having issued and received at least ceil(N^(1/stepMax)) living certifications, N members
+ *  - one bit per sentry and per key, every sentry walks at once : stepMax rounds of OR over the incoming rows
+ *  - a round only reads the keys whose bits changed during the previous one, the frontier
+ *  - keys are split across juniter.wot.parallelism threads, each writes its own keys' words only
+ *  - only members' certifications carry the sentries' bits, the reached key itself may be a newcomer
+ *  - the outcome of every key is kept until the next block changes the graph, see {@link WotGraph#version()}
+ * </pre>
+ *
+ * A sentry does not count itself. For ğ1 : 5 rounds over a few tens of
+ * thousands of edges, one word per 64 sentries.
+ *
+ * @author ben
+ *
+ */
+@Component
+@ConditionalOnExpression("${juniter.wot.enabled:true}")
+public class DistanceRule {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * What the rule says of a key
+	 */
+	public static final class Outcome {
+
+		private final boolean sentry;
+		private final int reached;
+		private final int sentries;
+		private final boolean outdistanced;
+
+		Outcome(boolean sentry, int reached, int sentries, double xpercent) {
+			this.sentry = sentry;
+			this.reached = reached;
+			this.sentries = sentries;
+			this.outdistanced = reached < xpercent * sentries;
+		}
+
+		public boolean isSentry() {
+			return sentry;
+		}
+
+		/**
+		 * @return the sentries reaching the key, itself excluded
+		 */
+		public int reached() {
+			return reached;
+		}
+
+		/**
+		 * @return the sentries it should be reached by, itself excluded
+		 */
+		public int sentries() {
+			return sentries;
+		}
+
+		public boolean isOutdistanced() {
+			return outdistanced;
+		}
+
+		@Override
+		public String toString() {
+			return reached + "/" + sentries + (sentry ? " sentry" : "") + (outdistanced ? " outdistanced" : "");
+		}
+	}
+
+	/**
+	 * The reached sentries of every key, for one version of the graph
+	 */
+	private static final class Distances {
+
+		private final long version;
+		private final boolean[] sentry;
+		private final int[] reached;
+		private final int sentries;
+
+		Distances(long version, boolean[] sentry, int[] reached, int sentries) {
+			this.version = version;
+			this.sentry = sentry;
+			this.reached = reached;
+			this.sentries = sentries;
+		}
+	}
+
+	@Autowired
+	private WotGraph wot;
+
+	/**
+	 * 0 for one thread per core
+	 */
+	@Value("${juniter.wot.parallelism:0}")
+	private int parallelism;
+
+	private ForkJoinPool pool;
+
+	private volatile Distances cached;
+
+	@PostConstruct
+	public void init() {
+		pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param id a {@link juniter.model.compact.Key#id()}
+	 */
+	public Outcome outcome(int id) {
+		final var distances = distances();
+		if (id < 0 || id >= distances.reached.length)
+			return new Outcome(false, 0, distances.sentries, wot.xpercent());
+
+		final boolean sentry = distances.sentry[id];
+		return new Outcome(sentry, distances.reached[id], distances.sentries - (sentry ? 1 : 0), wot.xpercent());
+	}
+
+	/**
+	 * @return the distances of the current graph, computed once per version
+	 */
+	private synchronized Distances distances() {
+		var res = cached;
+		if (res != null && res.version == wot.version())
+			return res;
+
+		final long start = System.nanoTime();
+		res = compute(wot.incoming(), wot.stepMax());
+		cached = res;
+		logger.info("Distances of version " + res.version + " : " + res.sentries + " sentries over "
+				+ res.reached.length + " keys in " + (System.nanoTime() - start) / 1000 + "µs");
+		return res;
+	}
+
+	/**
+	 * The multi source BFS
+	 */
+	private Distances compute(WotGraph.Incoming graph, int stepMax) {
+		final int nodes = graph.nodes;
+
+		int members = 0;
+		for (int id = 0; id < nodes; id++) {
+			if (graph.members[id]) {
+				members++;
+			}
+		}
+		final int threshold = (int) Math.ceil(Math.pow(members, 1.0 / stepMax));
+
+		final var sentry = new boolean[nodes];
+		final var bit = new int[nodes];
+		int sentries = 0;
+		for (int id = 0; id < nodes; id++) {
+			final int received = graph.offsets[id + 1] - graph.offsets[id];
+			if (graph.members[id] && graph.issued[id] >= threshold && received >= threshold) {
+				sentry[id] = true;
+				bit[id] = sentries++;
+			}
+		}
+
+		final int words = Math.max(1, (sentries + 63) >>> 6);
+		var reach = new long[nodes * words];
+		var changed = new boolean[nodes];
+		for (int id = 0; id < nodes; id++) {
+			if (sentry[id]) {
+				reach[id * words + (bit[id] >>> 6)] |= 1L << bit[id];
+				changed[id] = true;
+			}
+		}
+
+		for (int step = 0; step < stepMax; step++) {
+			final var from = reach;
+			final var frontier = changed;
+			final var to = reach.clone();
+			final var next = new boolean[nodes];
+			pool.submit(() -> IntStream.range(0, nodes).parallel().forEach(id -> {
+				final int base = id * words;
+				boolean grew = false;
+				for (int i = graph.offsets[id]; i < graph.offsets[id + 1]; i++) {
+					final int certifier = graph.certifiers[i];
+					if (!frontier[certifier] || !graph.members[certifier])
+						continue;
+
+					final int other = certifier * words;
+					for (int w = 0; w < words; w++) {
+						final long merged = to[base + w] | from[other + w];
+						grew |= merged != to[base + w];
+						to[base + w] = merged;
+					}
+				}
+				next[id] = grew;
+			})).join();
+			reach = to;
+			changed = next;
+		}
+
+		final var reached = new int[nodes];
+		for (int id = 0; id < nodes; id++) {
+			int count = 0;
+			for (int w = 0; w < words; w++) {
+				count += Long.bitCount(reach[id * words + w]);
+			}
+			reached[id] = count - (sentry[id] ? 1 : 0);
+		}
+		return new Distances(graph.version, sentry, reached, sentries);
+	}
+
+}
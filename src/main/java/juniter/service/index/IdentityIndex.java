@@ -0,0 +1,334 @@
+package juniter.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import juniter.model.Block;
+import juniter.model.compact.Key;
+
+/**
+ * The written identities, searchable by uid or pubkey prefix, with the blocks
+ * of their life in the wot
+ *
+ * <pre>
+ *  - uid, sigDate and self signature per {@link Key#id()}, in arrays
+ *  - two sorted arrays : lower cased uids and pubkeys, each with the ids alongside ; a prefix is one binary search then a scan
+ *  - per id, the blocks of its identity, joins, renewals, leaves, revocation and exclusions, as block << 3 | event
+ *  - while the wot is seeded, identities are appended and sorted once by {@link #seal()}, afterwards each one is inserted in place
+ * </pre>
+ *
+ * Not thread safe, the {@link WotGraph} owning it guards it with its lock.
+ *
+ * @author ben
+ *
+ */
+public class IdentityIndex {
+
+	public enum Event {
+		IDENTITY, JOINED, RENEWED, LEFT, REVOKED, EXCLUDED
+	}
+
+	private static final int NONE = -1;
+
+	// per key id
+	private String[] uids = new String[1024];
+	private String[] sigDates = new String[1024];
+	private String[] selves = new String[1024];
+	private int[][] events = new int[1024][];
+	private int[] eventCount = new int[1024];
+
+	// sorted by uid, lower cased
+	private String[] uidKeys = new String[1024];
+	private int[] uidIds = new int[1024];
+
+	// sorted by pubkey
+	private String[] pubkeyKeys = new String[1024];
+	private int[] pubkeyIds = new int[1024];
+
+	private int count;
+
+	/**
+	 * false from {@link #clear()} to {@link #seal()}
+	 */
+	private boolean sealed = true;
+
+	/**
+	 * Records what block does to the identities
+	 */
+	public void index(Block block) {
+		final int number = block.getNumber();
+		for (var identity : block.identities()) {
+			var key = identity.pubkey().key();
+			identity(key, identity.uid(), identity.buid().getBuid(), identity.signature());
+			event(key.id(), number, Event.IDENTITY);
+		}
+		for (var joiner : block.joiners()) {
+			event(joiner.pubkey().key().id(), number, Event.JOINED);
+		}
+		for (var active : block.actives()) {
+			event(active.pubkey().key().id(), number, Event.RENEWED);
+		}
+		for (var leaver : block.leavers()) {
+			event(leaver.pubkey().key().id(), number, Event.LEFT);
+		}
+		for (var revocation : block.revoked()) {
+			event(revocation.pubkey().key().id(), number, Event.REVOKED);
+		}
+		for (var excluded : block.excluded()) {
+			event(excluded.pubkey().key().id(), number, Event.EXCLUDED);
+		}
+	}
+
+	/**
+	 * Sorts what was appended since the last {@link #clear()}, identities are
+	 * then inserted in place
+	 */
+	public void seal() {
+		sortBy(true);
+		sortBy(false);
+		sealed = true;
+	}
+
+	/**
+	 * @return the id of the identity whose pubkey or uid is exactly
+	 *         pubkeyOrUid, -1 if there is none
+	 */
+	public int exact(String pubkeyOrUid) {
+		var key = Key.lookup(pubkeyOrUid);
+		if (key != null && has(key.id()))
+			return key.id();
+
+		final var lower = pubkeyOrUid.toLowerCase(Locale.ROOT);
+		for (int i = lowerBound(uidKeys, lower); i < count && uidKeys[i].equals(lower); i++) {
+			if (uids[uidIds[i]].equals(pubkeyOrUid))
+				return uidIds[i];
+		}
+		return NONE;
+	}
+
+	/**
+	 * @param prefix of a pubkey, or of a uid whatever its case
+	 * @param limit  most ids returned
+	 * @return the exact match first, then the uids, then the pubkeys starting
+	 *         with prefix, each in their order
+	 */
+	public List<Integer> search(String prefix, int limit) {
+		var res = new ArrayList<Integer>();
+		final int exact = exact(prefix);
+		if (exact != NONE) {
+			res.add(exact);
+		}
+
+		final var lower = prefix.toLowerCase(Locale.ROOT);
+		for (int i = lowerBound(uidKeys, lower); i < count && res.size() < limit && uidKeys[i].startsWith(lower); i++) {
+			if (uidIds[i] != exact) {
+				res.add(uidIds[i]);
+			}
+		}
+		for (int i = lowerBound(pubkeyKeys, prefix); i < count && res.size() < limit
+				&& pubkeyKeys[i].startsWith(prefix); i++) {
+			if (!res.contains(pubkeyIds[i])) {
+				res.add(pubkeyIds[i]);
+			}
+		}
+		return res;
+	}
+
+	public boolean has(int id) {
+		return id >= 0 && id < uids.length && uids[id] != null;
+	}
+
+	public String uid(int id) {
+		return id < uids.length ? uids[id] : null;
+	}
+
+	/**
+	 * @return the block the identity was signed at, number-hash
+	 */
+	public String sigDate(int id) {
+		return id < sigDates.length ? sigDates[id] : null;
+	}
+
+	public String self(int id) {
+		return id < selves.length ? selves[id] : null;
+	}
+
+	/**
+	 * @return the blocks where event happened to id, in chain order
+	 */
+	public int[] blocks(int id, Event event) {
+		if (id >= events.length || events[id] == null)
+			return new int[0];
+
+		return Arrays.stream(events[id], 0, eventCount[id]) //
+				.filter(packed -> (packed & 7) == event.ordinal()) //
+				.map(packed -> packed >>> 3) //
+				.toArray();
+	}
+
+	/**
+	 * @return the last block where event happened to id, -1 if it never did
+	 */
+	public int last(int id, Event event) {
+		var blocks = blocks(id, event);
+		return blocks.length == 0 ? NONE : blocks[blocks.length - 1];
+	}
+
+	public boolean isRevoked(int id) {
+		return last(id, Event.REVOKED) != NONE;
+	}
+
+	/**
+	 * @return the number of identities
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Empties the index, the identities are then appended until {@link #seal()}
+	 */
+	public void clear() {
+		Arrays.fill(uids, null);
+		Arrays.fill(sigDates, null);
+		Arrays.fill(selves, null);
+		Arrays.fill(events, null);
+		Arrays.fill(eventCount, 0);
+		Arrays.fill(uidKeys, 0, count, null);
+		Arrays.fill(pubkeyKeys, 0, count, null);
+		count = 0;
+		sealed = false;
+	}
+
+	private void identity(Key key, String uid, String sigDate, String self) {
+		final int id = key.id();
+		ensure(id);
+		final boolean known = uids[id] != null;
+		if (known && sealed) {
+			remove(uidKeys, uidIds, position(uidIds, id));
+			remove(pubkeyKeys, pubkeyIds, position(pubkeyIds, id));
+			count--;
+		}
+		uids[id] = uid;
+		sigDates[id] = sigDate;
+		selves[id] = self;
+
+		if (known && !sealed) {
+			uidKeys[position(uidIds, id)] = uid.toLowerCase(Locale.ROOT);
+			return;
+		}
+
+		if (count == uidKeys.length) {
+			uidKeys = Arrays.copyOf(uidKeys, count * 2);
+			uidIds = Arrays.copyOf(uidIds, count * 2);
+			pubkeyKeys = Arrays.copyOf(pubkeyKeys, count * 2);
+			pubkeyIds = Arrays.copyOf(pubkeyIds, count * 2);
+		}
+		if (sealed) {
+			insert(uidKeys, uidIds, uid.toLowerCase(Locale.ROOT), id);
+			insert(pubkeyKeys, pubkeyIds, key.toString(), id);
+		} else {
+			uidKeys[count] = uid.toLowerCase(Locale.ROOT);
+			uidIds[count] = id;
+			pubkeyKeys[count] = key.toString();
+			pubkeyIds[count] = id;
+		}
+		count++;
+	}
+
+	private void event(int id, int block, Event event) {
+		ensure(id);
+		if (events[id] == null || events[id].length == eventCount[id]) {
+			events[id] = events[id] == null ? new int[4] : Arrays.copyOf(events[id], eventCount[id] * 2);
+		}
+		events[id][eventCount[id]++] = block << 3 | event.ordinal();
+	}
+
+	/**
+	 * both arrays of a pair sorted by key, ids alongside
+	 */
+	private void sortBy(boolean uid) {
+		final var keys = uid ? uidKeys : pubkeyKeys;
+		final var ids = uid ? uidIds : pubkeyIds;
+		var order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+		var sortedKeys = new String[keys.length];
+		var sortedIds = new int[ids.length];
+		for (int i = 0; i < count; i++) {
+			sortedKeys[i] = keys[order[i]];
+			sortedIds[i] = ids[order[i]];
+		}
+		if (uid) {
+			uidKeys = sortedKeys;
+			uidIds = sortedIds;
+		} else {
+			pubkeyKeys = sortedKeys;
+			pubkeyIds = sortedIds;
+		}
+	}
+
+	/**
+	 * one of count entries shifted right, count is incremented by the caller
+	 */
+	private void insert(String[] keys, int[] ids, String key, int id) {
+		final int at = lowerBound(keys, key);
+		System.arraycopy(keys, at, keys, at + 1, count - at);
+		System.arraycopy(ids, at, ids, at + 1, count - at);
+		keys[at] = key;
+		ids[at] = id;
+	}
+
+	/**
+	 * one of count entries shifted left, count is decremented by the caller
+	 */
+	private void remove(String[] keys, int[] ids, int at) {
+		System.arraycopy(keys, at + 1, keys, at, count - at - 1);
+		System.arraycopy(ids, at + 1, ids, at, count - at - 1);
+		keys[count - 1] = null;
+	}
+
+	/**
+	 * @return the first of the count keys not below key
+	 */
+	private int lowerBound(String[] keys, String key) {
+		int low = 0, high = count;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (keys[mid].compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * a linear scan : only when an identity is written again for the same key
+	 */
+	private int position(int[] ids, int id) {
+		for (int i = 0; i < count; i++) {
+			if (ids[i] == id)
+				return i;
+		}
+		return NONE;
+	}
+
+	private void ensure(int id) {
+		if (id < uids.length)
+			return;
+
+		final int capacity = Math.max(id + 1, uids.length * 2);
+		uids = Arrays.copyOf(uids, capacity);
+		sigDates = Arrays.copyOf(sigDates, capacity);
+		selves = Arrays.copyOf(selves, capacity);
+		events = Arrays.copyOf(events, capacity);
+		eventCount = Arrays.copyOf(eventCount, capacity);
+	}
+
+}
@@ -0,0 +1,73 @@
+package juniter.service.index;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Rebuilds a stale index on a thread of its own, never on the thread reading it
+ *
+ * <pre>
+ *  - {@link #request()} queues one rebuild, asking again while one is queued or running does nothing
+ *  - a read meanwhile gets {@link #unavailable()}, a 503 : it never waits for the rebuild
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+final class Rebuilder {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final String name;
+
+	private final Runnable rebuild;
+
+	private final ExecutorService executor;
+
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	/**
+	 * @param name    of the index, ie: sources, wot
+	 * @param rebuild builds the whole index again
+	 */
+	Rebuilder(String name, Runnable rebuild) {
+		this.name = name;
+		this.rebuild = rebuild;
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			var t = new Thread(r, "Rebuilder-" + name);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	void request() {
+		if (!pending.compareAndSet(false, true))
+			return;
+
+		executor.execute(() -> {
+			try {
+				rebuild.run();
+			} catch (RuntimeException e) {
+				logger.error("Could not rebuild the " + name + ", next read asks again", e);
+			} finally {
+				pending.set(false);
+			}
+		});
+	}
+
+	ResponseStatusException unavailable() {
+		return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+				"The " + name + " index is being rebuilt, retry later");
+	}
+
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,601 @@
+package juniter.service.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import juniter.model.Block;
+import juniter.model.bma.Sources.Source;
+import juniter.model.compact.Hash256;
+import juniter.model.compact.Key;
+import juniter.model.event.BlockSavedEvent;
+import juniter.model.persistence.tx.Transaction;
+import juniter.model.persistence.tx.TxInput;
+import juniter.model.persistence.tx.TxType;
+import juniter.repository.BlockRepository;
+import juniter.utils.Constants;
+
+/**
+ * The unspent sources, dividends and transaction outputs, kept in memory
+ *
+ * <pre>
+ *  - transaction outputs by (tx hash, index) and by output condition, ie: SIG(pubkey)
+ *  - dividends as one bitmap of block numbers per member, the amounts once per dividend block
+ *  - a dividend goes to the members of its block, once its joiners and excluded are applied
+ *  - fed by {@link BlockSavedEvent} once its transaction committed, one block after the other : the last juniter.sources.undo blocks can be undone on a fork
+ *  - a hole in the chain marks the index stale, it is then rebuilt from the database by pages of blocks, on a {@link Rebuilder} : reads get a 503 meanwhile
+ *  - balances and monetary mass follow in a {@link BalanceLedger}, the mass of each block is checked against it
+ * </pre>
+ *
+ * {@link #sources(String)} costs the sources of that key,
+ * {@link #isUnspent(TxInput)} a single lookup, {@link #balance(String, int)} a
+ * few binary searches.
+ *
+ * @author ben
+ *
+ */
+@Component
+@ConditionalOnExpression("${juniter.sources.enabled:true}")
+public class SourcesIndex {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	/**
+	 * A transaction output : the tx hash and the output index
+	 */
+	private static final class Ref {
+
+		private final Hash256 hash;
+		private final int index;
+
+		Ref(Hash256 hash, int index) {
+			this.hash = hash;
+			this.index = index;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * hash.hashCode() + index;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Ref && ((Ref) o).index == index && ((Ref) o).hash.equals(hash);
+		}
+	}
+
+	/**
+	 * What applying a block changed, in the order to undo it
+	 */
+	private static final class Undo {
+
+		private final int number;
+		private final String hash;
+		private final String previousHash;
+
+		private final List<Key> joined = new ArrayList<Key>(0);
+		private final List<Key> excluded = new ArrayList<Key>(0);
+		private boolean dividend;
+		private final List<Key> spentDividendOf = new ArrayList<Key>(0);
+		private final List<Integer> spentDividendAt = new ArrayList<Integer>(0);
+		private final List<Source> spent = new ArrayList<Source>(0);
+		private final List<Source> created = new ArrayList<Source>(0);
+
+		Undo(Block block) {
+			number = block.getNumber();
+			hash = block.getHash();
+			previousHash = block.getPreviousHash();
+		}
+	}
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Autowired
+	private BlockRepository blockRepo;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	/**
+	 * blocks that can be undone, the fork window of the currency
+	 */
+	@Value("${juniter.sources.undo:100}")
+	private int undoDepth;
+
+	private final Map<Ref, Source> outputs = new HashMap<Ref, Source>();
+
+	private final Map<String, Set<Source>> byConditions = new HashMap<String, Set<Source>>();
+
+	private final Map<Key, MutableRoaringBitmap> dividends = new HashMap<Key, MutableRoaringBitmap>();
+
+	/**
+	 * block number to { dividend, unitbase }
+	 */
+	private final Map<Integer, int[]> amounts = new HashMap<Integer, int[]>();
+
+	/**
+	 * {@link Key#id()} of the current members
+	 */
+	private final MutableRoaringBitmap members = new MutableRoaringBitmap();
+
+	private final Deque<Undo> undo = new ArrayDeque<Undo>();
+
+	private final BalanceLedger ledger = new BalanceLedger();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private String currency = "g1";
+
+	private int head = -1;
+
+	private volatile boolean seeded = false;
+
+	private volatile boolean stale = false;
+
+	private final Rebuilder rebuilder = new Rebuilder("sources", this::seed);
+
+	public SourcesIndex() {
+	}
+
+	/**
+	 * Outside of Spring, ie: the tests
+	 */
+	SourcesIndex(int undoDepth) {
+		this.undoDepth = undoDepth;
+	}
+
+	/**
+	 * @param pubkey base 58
+	 * @return the dividends then the outputs spendable by SIG(pubkey), in chain
+	 *         order
+	 */
+	public List<Source> sources(String pubkey) {
+		fresh();
+		final var key = Key.lookup(pubkey);
+		final var conditions = sig(pubkey);
+		final var res = new ArrayList<Source>();
+
+		lock.readLock().lock();
+		try {
+			var ud = key == null ? null : dividends.get(key);
+			if (ud != null) {
+				for (int number : ud.toArray()) {
+					var amount = amounts.get(number);
+					res.add(new Source(TxType.D, number, key, amount[0], amount[1], conditions));
+				}
+			}
+			res.addAll(byConditions.getOrDefault(conditions, Set.of()));
+		} finally {
+			lock.readLock().unlock();
+		}
+		return res;
+	}
+
+	/**
+	 * The double spend check : is the source this input consumes still there
+	 */
+	public boolean isUnspent(TxInput input) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			if (TxType.D.equals(input.Type())) {
+				var ud = dividends.get(Key.lookup(input.Dsource().getPubkey()));
+				return ud != null && ud.contains(input.dBlockID());
+			}
+			return outputs.containsKey(new Ref(Hash256.of(input.tHash().getHash()), input.tIndex()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the cents SIG(pubkey) can spend, dividends included
+	 */
+	public long balance(String pubkey) {
+		fresh();
+		return balance(pubkey, head);
+	}
+
+	/**
+	 * @return the cents SIG(pubkey) could spend once block number was applied
+	 */
+	public long balance(String pubkey, int number) {
+		fresh();
+		final var key = Key.lookup(pubkey);
+		if (key == null)
+			return 0;
+
+		lock.readLock().lock();
+		try {
+			return ledger.balance(key.id(), number);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the cents created by dividends up to block number
+	 */
+	public long monetaryMass(int number) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			return ledger.mass(number);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public String getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * @return the last block applied
+	 */
+	public int head() {
+		return head;
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onBlockSaved(BlockSavedEvent event) {
+		var block = event.getBlock();
+		if (block.getNumber() == null)
+			return;
+
+		lock.writeLock().lock();
+		try {
+			if (seeded && !stale) {
+				apply(block);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Undoes the blocks above number, ie: before switching to a fork
+	 *
+	 * @return false if they went beyond the undo log, the index is then rebuilt
+	 *         in the background
+	 */
+	public boolean rollbackTo(int number) {
+		lock.writeLock().lock();
+		try {
+			while (head > number) {
+				var last = undo.pollLast();
+				if (last == null) {
+					logger.warn("Cannot undo block " + head + ", rebuilding the sources");
+					stale();
+					return false;
+				}
+				revert(last);
+			}
+			ledger.truncate(head);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		rebuilder.request();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rebuilder.shutdown();
+	}
+
+	/**
+	 * Rebuilds the index from the stored blocks, by pages so that the heap stays
+	 * flat. The write lock is held one page at a time, then for the pages saved
+	 * meanwhile : from there on the events take over.
+	 */
+	synchronized void seed() {
+		if (seeded && !stale)
+			return;
+
+		stale = true; // reads are unavailable, events are ignored
+		lock.writeLock().lock();
+		try {
+			clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		final var tx = new TransactionTemplate(txManager);
+		tx.setReadOnly(true);
+		int from = 0;
+		for (int to = blockRepo.current(); from <= to;) {
+			lock.writeLock().lock();
+			try {
+				from = page(tx, from, to);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+			for (int to = blockRepo.current(); from <= to;) {
+				from = page(tx, from, to);
+			}
+			seeded = true;
+			stale = false;
+			logger.info("Seeded the sources up to block " + head + " : " + outputs.size() + " outputs, "
+					+ dividends.size() + " members' dividends, " + members.getCardinality() + " members");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the index with the given blocks, in chain order, as if they had been
+	 * saved one after the other on a seeded index
+	 */
+	synchronized void seed(List<Block> blocks) {
+		lock.writeLock().lock();
+		try {
+			clear();
+			seeded = true;
+			stale = false;
+			blocks.forEach(this::apply);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Under the write lock
+	 *
+	 * @return the number after the page
+	 */
+	private int page(TransactionTemplate tx, int from, int to) {
+		final int last = Math.min(from + Constants.Defaults.STREAM_FETCH_SIZE - 1, to);
+		tx.execute(status -> {
+			for (var block : blockRepo.findRange(from, last)) {
+				index(block, new Undo(block));
+				head = block.getNumber();
+			}
+			em.clear();
+			return null;
+		});
+		return last + 1;
+	}
+
+	private void fresh() {
+		if (!seeded || stale) {
+			rebuilder.request();
+			throw rebuilder.unavailable();
+		}
+	}
+
+	/**
+	 * Under the write lock
+	 */
+	private void stale() {
+		stale = true;
+		rebuilder.request();
+	}
+
+	/**
+	 * Under the write lock
+	 */
+	private void apply(Block block) {
+		final int number = block.getNumber();
+		if (number <= head) {
+			var applied = undo.stream().filter(u -> u.number == number).findFirst();
+			if (!applied.isPresent() || Objects.equals(applied.get().hash, block.getHash()))
+				return; // saved again
+
+			logger.info("Block " + number + " forks to " + block.getHash() + ", undoing down to " + (number - 1));
+			if (!rollbackTo(number - 1))
+				return;
+		}
+
+		if (number != head + 1) {
+			logger.warn("Block " + number + " follows " + head + ", the sources will be rebuilt");
+			stale();
+			return;
+		}
+
+		var record = new Undo(block);
+		index(block, record);
+		head = number;
+		undo.addLast(record);
+		while (undo.size() > undoDepth) {
+			undo.pollFirst();
+		}
+	}
+
+	private void index(Block block, Undo record) {
+		final int number = block.getNumber();
+		if (block.getCurrency() != null) {
+			currency = block.getCurrency();
+		}
+
+		for (var joiner : block.joiners()) {
+			var key = joiner.pubkey().key();
+			if (members.checkedAdd(key.id())) {
+				ledger.join(key.id(), number);
+				record.joined.add(key);
+			}
+		}
+		for (var excluded : block.excluded()) {
+			var key = excluded.pubkey().key();
+			if (members.checkedRemove(key.id())) {
+				ledger.exclude(key.id(), number);
+				record.excluded.add(key);
+			}
+		}
+
+		if (block.getDividend() != null) {
+			final int base = block.getUnitbase() == null ? 0 : block.getUnitbase();
+			amounts.put(number, new int[] { block.getDividend(), base });
+			for (int id : members.toArray()) {
+				dividends.computeIfAbsent(Key.byId(id), k -> new MutableRoaringBitmap()).add(number);
+			}
+			ledger.dividend(number, BalanceLedger.value(block.getDividend(), base), members.getCardinality());
+			record.dividend = true;
+		}
+
+		for (var tx : block.getTransactions()) {
+			index(number, tx, record);
+		}
+
+		if (block.getMonetaryMass() != null && block.getMonetaryMass() != ledger.mass(number)) {
+			logger.warn("Block " + number + " monetaryMass " + block.getMonetaryMass() + " is not "
+					+ ledger.mass(number) + " for " + members.getCardinality() + " members");
+		}
+	}
+
+	/**
+	 * inputs first : a tx may spend the outputs of one before it in the same block
+	 */
+	private void index(int number, Transaction tx, Undo record) {
+		for (var input : tx.inputs()) {
+			if (TxType.D.equals(input.Type())) {
+				var key = input.Dsource().key();
+				var ud = dividends.get(key);
+				if (ud != null && ud.checkedRemove(input.dBlockID())) {
+					var amount = amounts.get(input.dBlockID());
+					ledger.move(key.id(), number, -BalanceLedger.value(amount[0], amount[1]));
+					record.spentDividendOf.add(key);
+					record.spentDividendAt.add(input.dBlockID());
+				} else {
+					logger.warn("Block " + number + " spends an unknown dividend " + input.getInput());
+				}
+			} else {
+				var spent = outputs.remove(new Ref(input.tHash().compact(), input.tIndex()));
+				if (spent != null) {
+					unlink(spent);
+					move(spent, number, -1);
+					record.spent.add(spent);
+				} else {
+					logger.warn("Block " + number + " spends an unknown output " + input.getInput());
+				}
+			}
+		}
+
+		if (tx.getHash() == null) {
+			logger.warn("Block " + number + " has a transaction without hash, its outputs are not indexed");
+			return;
+		}
+		final var hash = Hash256.of(tx.getHash());
+		final var txOutputs = tx.outputs();
+		for (int i = 0; i < txOutputs.size(); i++) {
+			var output = txOutputs.get(i);
+			var conditions = byConditions.computeIfAbsent(output.Function(), c -> new LinkedHashSet<Source>());
+			var source = new Source(TxType.T, i, hash, output.Amount(), output.Base(), output.Function());
+			outputs.put(new Ref(hash, i), source);
+			conditions.add(source);
+			move(source, number, 1);
+			record.created.add(source);
+		}
+	}
+
+	/**
+	 * Only the SIG(pubkey) outputs are someone's balance, the other conditions
+	 * count in no one's
+	 */
+	private void move(Source source, int number, int sign) {
+		final var conditions = source.getConditions();
+		if (!conditions.startsWith("SIG(") || !conditions.endsWith(")"))
+			return;
+
+		// pooled here if its first appearance is this output, null if not a pubkey
+		final var owner = Key.lookup(Key.intern(conditions.substring(4, conditions.length() - 1)));
+		if (owner != null) {
+			ledger.move(owner.id(), number, sign * BalanceLedger.value(source.getAmount(), source.getBase()));
+		}
+	}
+
+	/**
+	 * Back to the state before record's block, in the reverse order
+	 */
+	private void revert(Undo record) {
+		for (int i = record.created.size() - 1; i >= 0; i--) {
+			var source = record.created.get(i);
+			outputs.remove(ref(source));
+			unlink(source);
+		}
+		for (int i = record.spent.size() - 1; i >= 0; i--) {
+			var source = record.spent.get(i);
+			outputs.put(ref(source), source);
+			byConditions.computeIfAbsent(source.getConditions(), c -> new LinkedHashSet<Source>()).add(source);
+		}
+		for (int i = 0; i < record.spentDividendOf.size(); i++) {
+			dividends.get(record.spentDividendOf.get(i)).add(record.spentDividendAt.get(i));
+		}
+		if (record.dividend) {
+			amounts.remove(record.number);
+			dividends.values().forEach(ud -> ud.remove(record.number));
+			dividends.values().removeIf(MutableRoaringBitmap::isEmpty);
+		}
+		record.excluded.forEach(key -> members.add(key.id()));
+		record.joined.forEach(key -> members.remove(key.id()));
+
+		head = record.number - 1;
+		logger.info("Undid block " + record.number + "-" + record.hash + ", back to " + head + "-"
+				+ record.previousHash);
+	}
+
+	private void unlink(Source source) {
+		var conditions = byConditions.get(source.getConditions());
+		if (conditions != null) {
+			conditions.remove(source);
+			if (conditions.isEmpty()) {
+				byConditions.remove(source.getConditions());
+			}
+		}
+	}
+
+	private void clear() {
+		outputs.clear();
+		byConditions.clear();
+		dividends.clear();
+		amounts.clear();
+		members.clear();
+		undo.clear();
+		ledger.clear();
+		head = -1;
+	}
+
+	private static Ref ref(Source source) {
+		return new Ref((Hash256) source.identifier(), source.getNoffset());
+	}
+
+	private static String sig(String pubkey) {
+		return "SIG(" + pubkey + ")";
+	}
+
+}
@@ -0,0 +1,398 @@
+package juniter.service.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.buffer.BufferFastAggregation;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import juniter.model.Block;
+import juniter.model.ChainHead;
+import juniter.model.event.BlockSavedEvent;
+import juniter.repository.BlockRepository;
+
+/**
+ * Block numbers per /blockchain/with/ category, as compressed bitmaps
+ *
+ * <pre>
+ *  - one roaring bitmap per category, plus one of every stored block
+ *  - fed by {@link BlockSavedEvent} once its transaction committed, a block saved again has its bits derived again : a fork clears what it no longer has
+ *  - written to juniter.index.dir on shutdown, up to the last block of the unbroken run from 0, mmapped back at startup
+ *  - only the blocks above the persisted one are read from the database, all of them if that block is gone
+ *  - unions and intersections never load a Block
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Component
+public class WithIndex {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int FORMAT = 1;
+
+	private static final String FILE = "with.idx";
+
+	public enum Category {
+
+		NEWCOMERS("newcomers", b -> !b.getJoiners().isEmpty(), "join b.joiners x", null), //
+		CERTS("certs", b -> !b.getCertifications().isEmpty(), "join b.certifications x", null), //
+		ACTIVES("actives", b -> !b.getActives().isEmpty(), "join b.actives x", null), //
+		LEAVERS("leavers", b -> !b.getLeavers().isEmpty(), "join b.leavers x", null), //
+		REVOKED("revoked", b -> !b.getRevoked().isEmpty(), "join b.revoked x", null), //
+		EXCLUDED("excluded", b -> !b.getExcluded().isEmpty(), "join b.excluded x", null), //
+		UD("ud", b -> b.getDividend() != null, "", "b.dividend is not null"), //
+		TX("tx", b -> !b.getTransactions().isEmpty(), "join b.transactions x", null);
+
+		private final String path;
+		private final Predicate<Block> predicate;
+		private final String join;
+		private final String condition;
+
+		Category(String path, Predicate<Block> predicate, String join, String condition) {
+			this.path = path;
+			this.predicate = predicate;
+			this.join = join;
+			this.condition = condition;
+		}
+
+		/**
+		 * @param path ie: newcomers, certs, tx ...
+		 */
+		public static Optional<Category> of(String path) {
+			return Arrays.stream(values()).filter(c -> c.path.equals(path)).findFirst();
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public boolean test(Block block) {
+			return predicate.test(block);
+		}
+
+		String seedQuery() {
+			return "select distinct b.number from Block b " + join + " where b.number > :from"
+					+ (condition == null ? "" : " and " + condition) + " order by b.number";
+		}
+	}
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Autowired
+	private BlockRepository blockRepo;
+
+	@Value("${juniter.index.dir:data/index}")
+	private String dir;
+
+	private final Map<Category, MutableRoaringBitmap> index = new EnumMap<Category, MutableRoaringBitmap>(
+			Category.class);
+
+	private final MutableRoaringBitmap stored = new MutableRoaringBitmap();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private volatile boolean seeded = false;
+
+	public WithIndex() {
+		for (var category : Category.values()) {
+			index.put(category, new MutableRoaringBitmap());
+		}
+	}
+
+	/**
+	 * @return the block numbers of that category, sorted
+	 */
+	public List<Integer> blocks(Category category) {
+		return toList(union(category));
+	}
+
+	/**
+	 * @return a copy of the blocks having any of the categories
+	 */
+	public MutableRoaringBitmap union(Category... categories) {
+		return read(() -> BufferFastAggregation.or(bitmaps(categories)));
+	}
+
+	/**
+	 * @return a copy of the blocks having all of the categories
+	 */
+	public MutableRoaringBitmap intersection(Category... categories) {
+		return read(() -> categories.length == 0 ? new MutableRoaringBitmap()
+				: BufferFastAggregation.and(bitmaps(categories)));
+	}
+
+	/**
+	 * @param wanted block numbers
+	 * @return those not stored yet
+	 */
+	public MutableRoaringBitmap missing(ImmutableRoaringBitmap wanted) {
+		return read(() -> ImmutableRoaringBitmap.andNot(wanted, stored));
+	}
+
+	public static List<Integer> toList(ImmutableRoaringBitmap bitmap) {
+		var res = new ArrayList<Integer>(bitmap.getCardinality());
+		for (int i : bitmap.toArray()) {
+			res.add(i);
+		}
+		return res;
+	}
+
+	private ImmutableRoaringBitmap[] bitmaps(Category... categories) {
+		return Arrays.stream(categories).map(index::get).toArray(ImmutableRoaringBitmap[]::new);
+	}
+
+	private MutableRoaringBitmap read(Supplier<MutableRoaringBitmap> query) {
+		if (!seeded) {
+			seed();
+		}
+		lock.readLock().lock();
+		try {
+			return query.get();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void seed() {
+		if (seeded)
+			return;
+
+		final int from = load();
+
+		lock.writeLock().lock();
+		try {
+			for (var category : Category.values()) {
+				var numbers = em.createQuery(category.seedQuery(), Integer.class) //
+						.setParameter("from", from) //
+						.getResultList();
+				numbers.forEach(index.get(category)::add);
+				logger.info("Seeded /with/" + category.getPath() + " : " + index.get(category).getCardinality()
+						+ " blocks, " + numbers.size() + " from the database");
+			}
+			em.createQuery("select b.number from Block b where b.number > :from", Integer.class) //
+					.setParameter("from", from) //
+					.getResultList() //
+					.forEach(stored::add);
+			seeded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onBlockSaved(BlockSavedEvent event) {
+		var block = event.getBlock();
+		if (block.getNumber() == null)
+			return;
+
+		final int number = block.getNumber();
+		lock.writeLock().lock();
+		try {
+			for (var category : Category.values()) {
+				if (category.test(block)) {
+					index.get(category).add(number);
+				} else {
+					index.get(category).remove(number); // the block it replaces had it
+				}
+			}
+			stored.add(number);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Under the lock
+	 *
+	 * @return the last number of the unbroken run of stored blocks from 0, -1 if
+	 *         block 0 is not stored
+	 */
+	private int covered() {
+		if (!stored.contains(0))
+			return -1;
+
+		int lo = 0;
+		int hi = stored.last();
+		while (lo < hi) { // every number up to lo is stored
+			final int mid = lo + (hi - lo + 1) / 2;
+			if (stored.rankLong(mid) == mid + 1L) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return a copy of bitmap without the numbers above last
+	 */
+	private static MutableRoaringBitmap upTo(MutableRoaringBitmap bitmap, int last) {
+		var res = bitmap.clone();
+		res.remove((long) last + 1, 1L << 32);
+		return res;
+	}
+
+	/**
+	 * Map the index file and check it still matches the database
+	 *
+	 * @return the head it covers, -1 if nothing usable was loaded
+	 */
+	private int load() {
+		var file = Paths.get(dir, FILE);
+		if (!Files.exists(file))
+			return -1;
+
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != FORMAT)
+				return -1;
+
+			final int covered = buffer.getInt();
+			final String hash = readString(buffer);
+			var current = blockRepo.findTop1ByNumber(covered);
+			if (!current.isPresent() || !hash.equals(current.get().getHash())) {
+				logger.warn("Ignoring " + file + ", block " + covered + "-" + hash + " is not stored anymore");
+				return -1;
+			}
+
+			var loadedStored = readBitmap(buffer);
+			var loaded = new EnumMap<Category, MutableRoaringBitmap>(Category.class);
+			for (int i = buffer.getInt(); i > 0; i--) {
+				var category = Category.of(readString(buffer));
+				var bitmap = readBitmap(buffer);
+				category.ifPresent(c -> loaded.put(c, bitmap));
+			}
+
+			lock.writeLock().lock();
+			try {
+				stored.or(loadedStored);
+				loaded.forEach((c, bitmap) -> index.get(c).or(bitmap));
+			} finally {
+				lock.writeLock().unlock();
+			}
+			logger.info("Loaded " + file + " up to block " + covered);
+			return covered;
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Ignoring unreadable " + file + " : " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Persists the bitmaps up to {@link #covered()} only : a block above it may
+	 * have been saved while this index was not listening, those are read from the
+	 * database again on next startup
+	 */
+	@PreDestroy
+	public void save() {
+		if (!seeded)
+			return;
+
+		final int covered;
+		final MutableRoaringBitmap coveredStored;
+		final var coveredIndex = new EnumMap<Category, MutableRoaringBitmap>(Category.class);
+		lock.readLock().lock();
+		try {
+			covered = covered();
+			coveredStored = upTo(stored, covered);
+			index.forEach((category, bitmap) -> coveredIndex.put(category, upTo(bitmap, covered)));
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		var last = covered < 0 ? Optional.<Block>empty() : blockRepo.findTop1ByNumber(covered);
+		if (!last.isPresent())
+			return;
+
+		var file = Paths.get(dir, FILE);
+		try {
+			Files.createDirectories(file.getParent());
+			var tmp = Files.createTempFile(file.getParent(), FILE, ".tmp");
+
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(FORMAT);
+				out.writeInt(covered);
+				writeString(out, last.get().getHash());
+				writeBitmap(out, coveredStored);
+				out.writeInt(coveredIndex.size());
+				for (var entry : coveredIndex.entrySet()) {
+					writeString(out, entry.getKey().getPath());
+					writeBitmap(out, entry.getValue());
+				}
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logger.info("Saved " + file + " up to " + ChainHead.of(last.get()));
+		} catch (IOException e) {
+			logger.error("Could not save " + file, e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		var bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeBitmap(DataOutputStream out, MutableRoaringBitmap bitmap) throws IOException {
+		bitmap.runOptimize();
+		out.writeInt(bitmap.serializedSizeInBytes());
+		bitmap.serialize(out);
+	}
+
+	/**
+	 * The bitmap is read in place from the mapped buffer, then copied to a mutable
+	 * one
+	 */
+	private static MutableRoaringBitmap readBitmap(ByteBuffer buffer) {
+		final int size = buffer.getInt();
+		var slice = buffer.slice();
+		slice.limit(size);
+		buffer.position(buffer.position() + size);
+		return new ImmutableRoaringBitmap(slice).toMutableRoaringBitmap();
+	}
+
+}
@@ -0,0 +1,828 @@
+package juniter.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import juniter.model.Block;
+import juniter.model.ChainHead;
+import juniter.model.bma.WotCerts;
+import juniter.model.bma.WotIdentity;
+import juniter.model.bma.WotLookup;
+import juniter.model.bma.WotMembers;
+import juniter.model.bma.WotRequirements;
+import juniter.model.compact.Key;
+import juniter.model.event.BlockSavedEvent;
+import juniter.repository.BlockRepository;
+import juniter.utils.Constants;
+
+/**
+ * The web of trust in memory : identities as {@link Key#id()}, certifications
+ * as compressed sparse rows
+ *
+ * <pre>
+ *  - a certification is an edge : certifier, certified, the block it was signed at, the block it was written in, its expiry
+ *  - edges are appended in chain order, renewing a certification supersedes the previous edge between the same two keys
+ *  - outgoing and incoming edges in CSR arrays : per key id an offset, then the edge numbers, no object per edge
+ *  - a committed block appends to a tail scanned linearly, the rows are rebuilt once it holds juniter.wot.tail edges
+ *  - an edge expires at the median time of its block plus sigValidity : alive while the head's median time is below
+ *  - members and former members in bitmaps, from the joiners and excluded of each block
+ *  - the identities, searchable by prefix, in an {@link IdentityIndex} : lookup takes a prefix, identity-of a unique one
+ *  - a fork or a hole in the chain marks the graph stale, it is then rebuilt from the blocks of the database that touch the wot, on a {@link Rebuilder} : reads get a 503 meanwhile
+ *  - {@link #incoming()} freezes the living edges, for the {@link DistanceRule} to walk them without the lock
+ * </pre>
+ *
+ * Expiries are median times rather than block numbers : the currency
+ * parameters count sigValidity in seconds, and the block that will reach it is
+ * not known in advance.
+ *
+ * @author ben
+ *
+ */
+@Component
+@ConditionalOnExpression("${juniter.wot.enabled:true}")
+public class WotGraph {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private static final int[] NO_EDGES = new int[0];
+
+	@PersistenceContext
+	private EntityManager em;
+
+	@Autowired
+	private BlockRepository blockRepo;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	/**
+	 * edges appended since the rows were built, before they are rebuilt
+	 */
+	@Value("${juniter.wot.tail:4096}")
+	private int tailLength;
+
+	// currency parameters, ğ1's until the genesis is read
+	private long sigValidity = 63115200;
+	private long msValidity = 31557600;
+	private int sigQty = 5;
+	private int stepMax = 5;
+	private double xpercent = 0.8;
+
+	/**
+	 * most identities a lookup answers
+	 */
+	private static final int LOOKUP_LIMIT = 100;
+
+	// per key id
+	private long[] memberships = new long[1024];
+	private int nodes;
+
+	private final IdentityIndex identities = new IdentityIndex();
+
+	private final MutableRoaringBitmap members = new MutableRoaringBitmap();
+	private final MutableRoaringBitmap wasMembers = new MutableRoaringBitmap();
+
+	// per edge
+	private int[] certifiers = new int[4096];
+	private int[] certifieds = new int[4096];
+	private int[] signedOn = new int[4096];
+	private int[] writtenOn = new int[4096];
+	private long[] expiresAt = new long[4096];
+	private String[] signatures = new String[4096];
+	private int edges;
+
+	private final BitSet superseded = new BitSet();
+
+	/**
+	 * (certifier id << 32 | certified id) to its last edge
+	 */
+	private final Map<Long, Integer> lastEdge = new HashMap<Long, Integer>();
+
+	/**
+	 * number to hash of the blocks holding certifications
+	 */
+	private final Map<Integer, String> writtenHashes = new HashMap<Integer, String>();
+
+	// the rows, over the edges [0, rows) and the ids [0, rowNodes)
+	private int[] outOffsets = new int[1];
+	private int[] outEdges = NO_EDGES;
+	private int[] inOffsets = new int[1];
+	private int[] inEdges = NO_EDGES;
+	private int rows;
+	private int rowNodes;
+
+	/**
+	 * the last blocks applied, a block saved again is not applied twice
+	 */
+	private final Map<Integer, String> recent = new LinkedHashMap<Integer, String>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+			return size() > 128;
+		}
+	};
+
+	/**
+	 * The living certifications received, frozen as CSR rows over the ids [0,
+	 * nodes) : for the computations walking the whole graph outside of the lock
+	 */
+	static final class Incoming {
+
+		final long version;
+		final int nodes;
+		final int[] offsets;
+		final int[] certifiers;
+		final int[] issued;
+		final boolean[] members;
+
+		Incoming(long version, int nodes, int[] offsets, int[] certifiers, int[] issued, boolean[] members) {
+			this.version = version;
+			this.nodes = nodes;
+			this.offsets = offsets;
+			this.certifiers = certifiers;
+			this.issued = issued;
+			this.members = members;
+		}
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int head = -1;
+
+	/**
+	 * changes with every block applied, and when the graph is rebuilt
+	 */
+	private volatile long version;
+
+	/**
+	 * median time of the head
+	 */
+	private long now;
+
+	private volatile boolean seeded = false;
+
+	private volatile boolean stale = false;
+
+	private final Rebuilder rebuilder = new Rebuilder("wot", this::seed);
+
+	public WotGraph() {
+	}
+
+	/**
+	 * Outside of Spring, ie: the tests
+	 */
+	WotGraph(int tailLength) {
+		this.tailLength = tailLength;
+	}
+
+	/**
+	 * @return the current members, by uid
+	 */
+	public WotMembers members() {
+		fresh();
+		lock.readLock().lock();
+		try {
+			var res = new ArrayList<WotMembers.Member>(members.getCardinality());
+			for (int id : members.toArray()) {
+				res.add(new WotMembers.Member(Key.byId(id).toString(), identities.uid(id)));
+			}
+			return new WotMembers(res);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param pubkeyOrUid base 58 or uid, exact or the prefix of a single identity
+	 * @return null if none or several identities match
+	 */
+	public WotIdentity identityOf(String pubkeyOrUid) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			var ids = identities.search(pubkeyOrUid, 2);
+			if (ids.isEmpty() || ids.size() > 1 && identities.exact(pubkeyOrUid) < 0)
+				return null;
+
+			final int id = ids.get(0);
+			return new WotIdentity(Key.byId(id).toString(), identities.uid(id), identities.sigDate(id));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the living certifications received, null if no identity matches
+	 */
+	public WotCerts certifiersOf(String pubkeyOrUid) {
+		return certs(pubkeyOrUid, true);
+	}
+
+	/**
+	 * @return the living certifications issued, null if no identity matches
+	 */
+	public WotCerts certifiedBy(String pubkeyOrUid) {
+		return certs(pubkeyOrUid, false);
+	}
+
+	/**
+	 * @param prefix base 58 or uid, whatever the case of the uid
+	 * @return the matching identities with their certifiers and the identities
+	 *         they certified, partial beyond {@value #LOOKUP_LIMIT} of them
+	 */
+	public WotLookup lookup(String prefix) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			var ids = identities.search(prefix, LOOKUP_LIMIT + 1);
+			var res = new ArrayList<WotLookup.Result>();
+			for (int id : ids.subList(0, Math.min(ids.size(), LOOKUP_LIMIT))) {
+				res.add(lookup(id));
+			}
+			return new WotLookup(ids.size() > LOOKUP_LIMIT, res);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param distance the outcome of the distance rule for a key id
+	 * @return the requirements of the matching identity, null if none matches
+	 */
+	public WotRequirements requirements(String pubkeyOrUid, IntFunction<DistanceRule.Outcome> distance) {
+		fresh();
+		int id;
+		lock.readLock().lock();
+		try {
+			id = resolve(pubkeyOrUid);
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (id < 0)
+			return null;
+
+		// out of the lock, the first call after a block walks the whole graph
+		final var outcome = distance.apply(id);
+
+		lock.readLock().lock();
+		try {
+			final var pubkey = Key.byId(id).toString();
+			var certs = new ArrayList<WotRequirements.Cert>();
+			in(id, e -> certs.add(
+					new WotRequirements.Cert(Key.byId(certifiers[e]).toString(), pubkey, expiresAt[e] - now)));
+			final long membershipExpiresIn = memberships[id] > 0 ? memberships[id] + msValidity - now : 0;
+			return new WotRequirements(List.of(new WotRequirements.Requirement(pubkey, identities.uid(id),
+					identities.sigDate(id), revokedOn(id), outcome.isOutdistanced(), outcome.isSentry(), wasMember(id),
+					certs, membershipExpiresIn)));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the key ids of the living certifiers of id, in the order they were
+	 *         written
+	 */
+	public int[] certifiersOf(int id) {
+		return ends(id, true);
+	}
+
+	/**
+	 * @return the key ids id certifies, in the order they were written
+	 */
+	public int[] certifiedBy(int id) {
+		return ends(id, false);
+	}
+
+	public boolean isMember(int id) {
+		return members.contains(id);
+	}
+
+	public boolean wasMember(int id) {
+		return wasMembers.contains(id);
+	}
+
+	public int head() {
+		return head;
+	}
+
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * @return the median time of the head
+	 */
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * @return the median time id's last membership, join or renewal, expires at,
+	 *         0 if it never had one
+	 */
+	public long membershipExpiry(int id) {
+		return id < nodes && memberships[id] > 0 ? memberships[id] + msValidity : 0;
+	}
+
+	public int sigQty() {
+		return sigQty;
+	}
+
+	public int stepMax() {
+		return stepMax;
+	}
+
+	public double xpercent() {
+		return xpercent;
+	}
+
+	/**
+	 * @return the living certifications received by every key, as they are now
+	 */
+	Incoming incoming() {
+		fresh();
+		lock.readLock().lock();
+		try {
+			var offsets = new int[nodes + 1];
+			var issued = new int[nodes];
+			for (int e = 0; e < edges; e++) {
+				if (alive(e)) {
+					offsets[certifieds[e] + 1]++;
+					issued[certifiers[e]]++;
+				}
+			}
+			for (int i = 0; i < nodes; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			var sources = new int[offsets[nodes]];
+			var next = Arrays.copyOf(offsets, nodes);
+			for (int e = 0; e < edges; e++) {
+				if (alive(e)) {
+					sources[next[certifieds[e]]++] = certifiers[e];
+				}
+			}
+			var member = new boolean[nodes];
+			for (int id : members.toArray()) {
+				member[id] = true;
+			}
+			return new Incoming(version, nodes, offsets, sources, issued, member);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void onBlockSaved(BlockSavedEvent event) {
+		var block = event.getBlock();
+		if (block.getNumber() == null)
+			return;
+
+		lock.writeLock().lock();
+		try {
+			if (seeded && !stale) {
+				apply(block);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		rebuilder.request();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		rebuilder.shutdown();
+	}
+
+	/**
+	 * Rebuilds the graph from the stored blocks that touch the wot, by pages so
+	 * that the heap stays flat. The write lock is held one page at a time, then
+	 * for the pages saved meanwhile : from there on the events take over.
+	 */
+	synchronized void seed() {
+		if (seeded && !stale)
+			return;
+
+		stale = true; // reads are unavailable, events are ignored
+		lock.writeLock().lock();
+		try {
+			clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		final var tx = new TransactionTemplate(txManager);
+		tx.setReadOnly(true);
+		final var numbers = tx.execute(status -> blockRepo.wotNumbers());
+		for (int done = 0; done < numbers.size();) {
+			lock.writeLock().lock();
+			try {
+				done = page(tx, numbers, done);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+			final int last = head;
+			final var saved = tx.execute(status -> blockRepo.wotNumbers()).stream() //
+					.filter(n -> n > last) //
+					.collect(Collectors.toList());
+			for (int done = 0; done < saved.size();) {
+				done = page(tx, saved, done);
+			}
+			tx.execute(status -> {
+				blockRepo.head().map(ChainHead::getNumber).flatMap(blockRepo::findTop1ByNumber).ifPresent(block -> {
+					head = block.getNumber();
+					now = block.getMedianTime();
+					recent.put(head, block.getHash());
+				});
+				em.clear();
+				return null;
+			});
+			rebuild();
+			identities.seal();
+			seeded = true;
+			stale = false;
+			logger.info("Seeded the wot up to block " + head + " : " + nodes + " identities, " + edges
+					+ " certifications, " + members.getCardinality() + " members");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the graph with the given blocks, in chain order, as if they had been
+	 * saved one after the other on a seeded graph
+	 */
+	synchronized void seed(List<Block> blocks) {
+		lock.writeLock().lock();
+		try {
+			clear();
+			identities.seal(); // empty, the blocks insert their identities in place
+			seeded = true;
+			stale = false;
+			blocks.forEach(this::apply);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Under the write lock
+	 *
+	 * @return the index in numbers after the page
+	 */
+	private int page(TransactionTemplate tx, List<Integer> numbers, int from) {
+		final var slice = numbers.subList(from, Math.min(from + Constants.Defaults.STREAM_FETCH_SIZE, numbers.size()));
+		tx.execute(status -> {
+			for (var block : blockRepo.findPage(slice)) {
+				index(block);
+			}
+			em.clear();
+			return null;
+		});
+		return from + slice.size();
+	}
+
+	private void fresh() {
+		if (!seeded || stale) {
+			rebuilder.request();
+			throw rebuilder.unavailable();
+		}
+	}
+
+	/**
+	 * Under the write lock
+	 */
+	private void stale() {
+		stale = true;
+		rebuilder.request();
+	}
+
+	/**
+	 * Under the write lock
+	 */
+	private void apply(Block block) {
+		final int number = block.getNumber();
+		if (number <= head) {
+			if (Objects.equals(recent.get(number), block.getHash()))
+				return; // saved again
+
+			logger.info("Block " + number + " forks to " + block.getHash() + ", the wot will be rebuilt");
+			stale();
+			return;
+		}
+
+		if (number != head + 1) {
+			logger.warn("Block " + number + " follows " + head + ", the wot will be rebuilt");
+			stale();
+			return;
+		}
+
+		index(block);
+		if (edges - rows >= tailLength) {
+			rebuild();
+		}
+	}
+
+	private void index(Block block) {
+		final int number = block.getNumber();
+		final long time = block.getMedianTime() == null ? now : block.getMedianTime();
+
+		if (number == 0 && block.getParameters() != null) {
+			parameters(block.getParameters());
+		}
+
+		identities.index(block);
+		for (var identity : block.identities()) {
+			ensure(identity.pubkey().key().id());
+		}
+		for (var joiner : block.joiners()) {
+			final int id = joiner.pubkey().key().id();
+			ensure(id);
+			members.add(id);
+			wasMembers.add(id);
+			memberships[id] = time;
+		}
+		for (var active : block.actives()) {
+			final int id = active.pubkey().key().id();
+			ensure(id);
+			memberships[id] = time;
+		}
+		for (var excluded : block.excluded()) {
+			members.remove(excluded.pubkey().key().id());
+		}
+
+		for (var cert : block.certifications()) {
+			final int from = cert.getCertifier().key().id();
+			final int to = cert.getCertified().key().id();
+			ensure(Math.max(from, to));
+			append(from, to, cert.getBlockNumber(), number, time + sigValidity, cert.getSignature());
+		}
+		if (!block.certifications().isEmpty()) {
+			writtenHashes.put(number, block.getHash());
+		}
+
+		head = number;
+		now = time;
+		recent.put(number, block.getHash());
+		version++;
+	}
+
+	private void append(int from, int to, int signed, int written, long expiry, String signature) {
+		if (edges == certifiers.length) {
+			final int capacity = edges * 2;
+			certifiers = Arrays.copyOf(certifiers, capacity);
+			certifieds = Arrays.copyOf(certifieds, capacity);
+			signedOn = Arrays.copyOf(signedOn, capacity);
+			writtenOn = Arrays.copyOf(writtenOn, capacity);
+			expiresAt = Arrays.copyOf(expiresAt, capacity);
+			signatures = Arrays.copyOf(signatures, capacity);
+		}
+		certifiers[edges] = from;
+		certifieds[edges] = to;
+		signedOn[edges] = signed;
+		writtenOn[edges] = written;
+		expiresAt[edges] = expiry;
+		signatures[edges] = signature;
+
+		var previous = lastEdge.put((long) from << 32 | to, edges);
+		if (previous != null) {
+			superseded.set(previous);
+		}
+		edges++;
+	}
+
+	/**
+	 * Counting sort of the edges by certifier then by certified, the superseded
+	 * and expired ones left out
+	 */
+	private void rebuild() {
+		outOffsets = new int[nodes + 1];
+		inOffsets = new int[nodes + 1];
+		int alive = 0;
+		for (int e = 0; e < edges; e++) {
+			if (alive(e)) {
+				outOffsets[certifiers[e] + 1]++;
+				inOffsets[certifieds[e] + 1]++;
+				alive++;
+			}
+		}
+		for (int i = 0; i < nodes; i++) {
+			outOffsets[i + 1] += outOffsets[i];
+			inOffsets[i + 1] += inOffsets[i];
+		}
+
+		outEdges = new int[alive];
+		inEdges = new int[alive];
+		var nextOut = Arrays.copyOf(outOffsets, nodes);
+		var nextIn = Arrays.copyOf(inOffsets, nodes);
+		for (int e = 0; e < edges; e++) {
+			if (alive(e)) {
+				outEdges[nextOut[certifiers[e]]++] = e;
+				inEdges[nextIn[certifieds[e]]++] = e;
+			}
+		}
+		rows = edges;
+		rowNodes = nodes;
+	}
+
+	/**
+	 * the living edges id receives : its row, then the tail
+	 */
+	private void in(int id, IntConsumer edge) {
+		if (id < rowNodes) {
+			for (int i = inOffsets[id]; i < inOffsets[id + 1]; i++) {
+				if (alive(inEdges[i])) {
+					edge.accept(inEdges[i]);
+				}
+			}
+		}
+		for (int e = rows; e < edges; e++) {
+			if (certifieds[e] == id && alive(e)) {
+				edge.accept(e);
+			}
+		}
+	}
+
+	/**
+	 * the living edges id issued : its row, then the tail
+	 */
+	private void out(int id, IntConsumer edge) {
+		if (id < rowNodes) {
+			for (int i = outOffsets[id]; i < outOffsets[id + 1]; i++) {
+				if (alive(outEdges[i])) {
+					edge.accept(outEdges[i]);
+				}
+			}
+		}
+		for (int e = rows; e < edges; e++) {
+			if (certifiers[e] == id && alive(e)) {
+				edge.accept(e);
+			}
+		}
+	}
+
+	private boolean alive(int edge) {
+		return expiresAt[edge] > now && !superseded.get(edge);
+	}
+
+	private int[] ends(int id, boolean certifiersOf) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			var res = new int[][] { new int[16] };
+			var count = new int[1];
+			IntConsumer add = e -> {
+				if (count[0] == res[0].length) {
+					res[0] = Arrays.copyOf(res[0], count[0] * 2);
+				}
+				res[0][count[0]++] = certifiersOf ? certifiers[e] : certifieds[e];
+			};
+			if (certifiersOf) {
+				in(id, add);
+			} else {
+				out(id, add);
+			}
+			return Arrays.copyOf(res[0], count[0]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private WotLookup.Result lookup(int id) {
+		var others = new ArrayList<WotLookup.Other>();
+		in(id, e -> {
+			final int from = certifiers[e];
+			others.add(new WotLookup.Other(Key.byId(from).toString(), identities.uid(from), signedOn[e],
+					isMember(from), wasMember(from), signatures[e]));
+		});
+		var signed = new ArrayList<WotLookup.Signed>();
+		out(id, e -> {
+			final int to = certifieds[e];
+			signed.add(new WotLookup.Signed(Key.byId(to).toString(), identities.uid(to), identities.sigDate(to),
+					signedOn[e], isMember(to), wasMember(to), signatures[e]));
+		});
+		var uid = new WotLookup.Uid(identities.uid(id), identities.sigDate(id), revokedOn(id), identities.self(id),
+				others);
+		return new WotLookup.Result(Key.byId(id).toString(), List.of(uid), signed);
+	}
+
+	/**
+	 * @return the block id was revoked in, null if it was not
+	 */
+	private Integer revokedOn(int id) {
+		final int block = identities.last(id, IdentityIndex.Event.REVOKED);
+		return block < 0 ? null : block;
+	}
+
+	private WotCerts certs(String pubkeyOrUid, boolean certifiersOf) {
+		fresh();
+		lock.readLock().lock();
+		try {
+			final int id = resolve(pubkeyOrUid);
+			if (id < 0)
+				return null;
+
+			var res = new ArrayList<WotCerts.Cert>();
+			IntConsumer add = e -> {
+				final int other = certifiersOf ? certifiers[e] : certifieds[e];
+				res.add(new WotCerts.Cert(Key.byId(other).toString(), identities.uid(other), isMember(other),
+						wasMember(other), signedOn[e], identities.sigDate(other), writtenOn[e],
+						writtenHashes.get(writtenOn[e]), signatures[e]));
+			};
+			if (certifiersOf) {
+				in(id, add);
+			} else {
+				out(id, add);
+			}
+			return new WotCerts(Key.byId(id).toString(), identities.uid(id), isMember(id), identities.sigDate(id), res);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the id of the identity written for that pubkey or uid, -1 if none
+	 */
+	private int resolve(String pubkeyOrUid) {
+		return identities.exact(pubkeyOrUid);
+	}
+
+	/**
+	 * c:dt:ud0:sigPeriod:sigStock:sigWindow:sigValidity:sigQty:idtyWindow:msWindow:xpercent:msValidity:stepMax:...
+	 */
+	private void parameters(String parameters) {
+		var vals = parameters.split(":");
+		sigValidity = Long.parseLong(vals[6]);
+		sigQty = Integer.parseInt(vals[7]);
+		xpercent = Double.parseDouble(vals[10]);
+		msValidity = Long.parseLong(vals[11]);
+		stepMax = Integer.parseInt(vals[12]);
+	}
+
+	private void ensure(int id) {
+		if (id >= memberships.length) {
+			memberships = Arrays.copyOf(memberships, Math.max(id + 1, memberships.length * 2));
+		}
+		nodes = Math.max(nodes, id + 1);
+	}
+
+	private void clear() {
+		Arrays.fill(memberships, 0);
+		nodes = 0;
+		identities.clear();
+		members.clear();
+		wasMembers.clear();
+		Arrays.fill(signatures, 0, edges, null);
+		edges = 0;
+		superseded.clear();
+		lastEdge.clear();
+		writtenHashes.clear();
+		outOffsets = new int[1];
+		inOffsets = new int[1];
+		outEdges = inEdges = NO_EDGES;
+		rows = rowNodes = 0;
+		recent.clear();
+		head = -1;
+		now = 0;
+		version++;
+	}
+
+}
@@ -1,8 +1,15 @@
 package juniter.service.rest;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -11,20 +18,35 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 
 import juniter.model.Block;
 import juniter.model.bma.WithWrapper;
 import juniter.repository.BlockRepository;
+import juniter.service.BlockCache;
+import juniter.service.BlockValidator;
+import juniter.service.PeerClient;
+import juniter.service.PeerRegistry;
+import juniter.service.index.WithIndex;
+import juniter.utils.CompletableFutures;
 import juniter.utils.Constants;
 
 /**
@@ -62,49 +84,177 @@ public class BlockchainService {
 
 	private static final Logger logger = LogManager.getLogger();
 
+	/**
+	 * blocks per range query when streaming
+	 */
+	private static final int PAGE = 200;
+
+	private static final TypeReference<List<Block>> BLOCKS = new TypeReference<List<Block>>() {
+	};
+
+	private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
 	@Autowired
 	private BlockRepository repository;
 
-	//@Autowired
-	private  RestTemplate restTemplate = new RestTemplate();
+	@Autowired
+	private WithIndex withIndex;
+
+	@Autowired
+	private JsonStreams jsonStreams;
+
+	@Autowired(required = false)
+	private BlockCache blockCache;
+
+	@Autowired
+	private PeerRegistry peerRegistry;
+
+	@Autowired
+	private PeerClient http;
 
 	@Autowired
-	private PeeringService peeringService;
+	private BlockValidator validator;
+
+	/**
+	 * most blocks of one /blocks/{count}/{from} request, as duniter's BMA
+	 */
+	@Value("${juniter.bma.maxBlocks:5000}")
+	private int maxBlocks;
+
+	/**
+	 * /blocks/ requests to the peers in flight at once, fetching missing blocks
+	 */
+	@Value("${juniter.bma.fetchInflight:4}")
+	private int fetchInflight;
 
 	@RequestMapping(value = "/", method = RequestMethod.GET)
 	void handle(HttpServletResponse response) throws IOException {
 		response.sendRedirect("/html/");
 	}
 
+	/**
+	 * A block buried under the fork window is answered with the bytes it was
+	 * serialized to once, gzipped if the client accepts it, with a strong ETag and
+	 * as immutable. The others are serialized on each request.
+	 */
 	@RequestMapping(value = "/block/{id}", method = RequestMethod.GET)
-	public Block block(@PathVariable("id") Integer id) {
+	public ResponseEntity<?> block(@PathVariable("id") Integer id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
 		logger.debug("Entering /blockchain/block/{number=" + id + "}");
-		return repository.findTop1ByNumber(id).orElseGet(() -> fetchAndSaveBlock(id));
+		var json = blockCache != null ? blockCache.json(id) : Optional.<BlockCache.Json>empty();
+		if (!json.isPresent())
+			return ResponseEntity.ok(block(id));
+
+		final boolean gzipped = acceptsGzip(acceptEncoding);
+		final var etag = "\"" + json.get().hash() + (gzipped ? "-gzip" : "") + "\"";
+		final boolean notModified = matches(ifNoneMatch, etag);
+		final var builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK) //
+				.eTag(etag) //
+				.header(HttpHeaders.CACHE_CONTROL, IMMUTABLE) //
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (notModified)
+			return builder.build();
+
+		if (gzipped) {
+			builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return builder.contentType(MediaType.APPLICATION_JSON_UTF8).body(json.get().bytes(gzipped));
 	}
 
-	@Transactional
-	@RequestMapping(value = "/blocks/{count}/{from}", method = RequestMethod.GET)
-	public List<Block> block(@PathVariable("count") Integer count, @PathVariable("from") Integer from) {
+	/**
+	 * @param acceptEncoding ie: "gzip, deflate" or "gzip;q=0, *"
+	 * @return true if gzip, or *, is listed with a non zero quality
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return false;
+
+		Double gzip = null;
+		Double any = null;
+		for (var coding : acceptEncoding.split(",")) {
+			var parts = coding.split(";");
+			var name = parts[0].trim().toLowerCase();
+			double q = 1;
+			for (int i = 1; i < parts.length; i++) {
+				var param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						q = Double.parseDouble(param.substring(2).trim());
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				gzip = q;
+			} else if (name.equals("*")) {
+				any = q;
+			}
+		}
+		return gzip != null ? gzip > 0 : any != null && any > 0;
+	}
 
-		logger.info("Entering /blockchain/blocks/{count=" + count + "}/{from=" + from + "}");
+	/**
+	 * @param ifNoneMatch ie: "*", or entity tags separated by commas, weak ones
+	 *                    included
+	 * @return true if etag is one of them, or if it is *
+	 */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null)
+			return false;
+
+		for (var tag : ifNoneMatch.split(",")) {
+			var trimmed = tag.trim();
+			if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the stored block, fetched from a peer and saved if it is missing
+	 */
+	public Block block(Integer id) {
+		var stored = blockCache != null ? blockCache.block(id) : repository.findTop1ByNumber(id);
+		return stored.orElseGet(() -> fetchAndSaveBlock(id));
+	}
 
-		List<Integer> blocksToFind = IntStream.range(from, from + count).boxed().collect(Collectors.toList());
-		logger.info("---blocksToFind: " + blocksToFind);
+	@RequestMapping(value = "/cache", method = RequestMethod.GET)
+	public Map<String, BlockCache.Stats> cache() {
+		if (blockCache == null)
+			throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "juniter.blockcache.enabled is false");
 
-		List<Block> knownBlocks = repository.findByNumberIn(blocksToFind).collect(Collectors.toList());
-		logger.info("---known blocks: " + knownBlocks.stream().map(b -> b.getNumber()).collect(Collectors.toList()));
+		return blockCache.stats();
+	}
 
-		List<Block> blocksToSave = blocksToFind.stream()
-				.filter(b -> !knownBlocks.stream().anyMatch(kb -> kb.getNumber().equals(b)))
-				.map(lg -> fetchAndSaveBlock(lg)).collect(Collectors.toList());
+	/**
+	 * Missing blocks are fetched and stored first, then the range is streamed by
+	 * pages, as a JSON array or as NDJSON. What is missing is read from the
+	 * stored numbers of the range, a range fully stored is never fetched again.
+	 * A count below 1 or a negative from is a 400, count is capped at
+	 * juniter.bma.maxBlocks.
+	 */
+	@RequestMapping(value = "/blocks/{count}/{from}", method = RequestMethod.GET)
+	public ResponseEntity<StreamingResponseBody> block(@PathVariable("count") Integer count,
+			@PathVariable("from") Integer from, @RequestHeader(value = "Accept", required = false) String accept) {
+
+		logger.info("Entering /blockchain/blocks/{count=" + count + "}/{from=" + from + "}");
+		if (count <= 0 || from < 0)
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be positive, from not negative");
 
-		logger.info("---fetch blocks: " + Stream.concat(blocksToSave.stream(), knownBlocks.stream())
-				.map(b -> b.getNumber().toString()).collect(Collectors.joining(",")));
+		final int to = (int) Math.min((long) from + Math.min(count, maxBlocks) - 1, Integer.MAX_VALUE);
+		var missing = new MutableRoaringBitmap();
+		missing.add((long) from, (long) to + 1);
+		repository.numbersInRange(from, to).forEach(missing::remove);
 
-		repository.saveAll(blocksToSave);
+		if (!missing.isEmpty()) {
+			logger.info("---fetching " + missing.getCardinality() + " missing blocks");
+			repository.saveAllInBatch(fetchMissing(missing));
+		}
 
-		return Stream.concat(blocksToSave.stream(), knownBlocks.stream()).collect(Collectors.toList());
+		return jsonStreams.streamPages(accept, () -> pages(from, to));
 	}
 
 	@Transactional
@@ -112,29 +262,37 @@ public class BlockchainService {
 	public Block current() {
 		logger.info("Entering /blockchain/current");
 
-		return repository.findTop1ByOrderByNumberDesc().orElse(fetchBlock("current"));
+		return repository.head() //
+				.flatMap(head -> repository.findTop1ByNumber(head.getNumber())) //
+				.orElseGet(() -> fetchBlock("current"));
 	}
 
-	@Transactional(readOnly = true)
+	/**
+	 * The whole chain, streamed by pages
+	 */
 	@RequestMapping(value = "/all", method = RequestMethod.GET)
-	public List<Block> all() {
+	public ResponseEntity<StreamingResponseBody> all(
+			@RequestHeader(value = "Accept", required = false) String accept) {
 
 		logger.info("Entering /blockchain/all");
+		return jsonStreams.streamPages(accept, () -> pages(0, repository.current()));
+	}
 
-		try (Stream<Block> items = repository.findTop10ByOrderByNumberDesc()) {
-			return items.collect(Collectors.toList());
-		} catch (Exception e) {
-			logger.error(e);
-			return null;
-		}
-
+	/**
+	 * Lazily read [from, to] with one range query per page
+	 */
+	private Stream<List<Block>> pages(int from, int to) {
+		return IntStream.iterate(from, p -> p <= to, p -> p + PAGE) //
+				.mapToObj(p -> repository.findRange(p, Math.min(to, p + PAGE - 1)));
 	}
 
 	/**
-	 * /blockchain/with/{what=[newcomers,certs,actives,leavers,excluded,ud,tx]}
+	 * /blockchain/with/{what=[newcomers,certs,actives,leavers,revoked,excluded,ud,tx]}
 	 * 
 	 * <p>
-	 * Filters according to 'what' you desire
+	 * Filters according to 'what' you desire, categories can be combined :
+	 * tx,certs for the blocks having either, tx+certs for those having both. An
+	 * unknown category is a 400.
 	 * </p>
 	 * <p>
 	 * Sort by number
@@ -144,42 +302,17 @@ public class BlockchainService {
 	 * @return A Wrapped List of Blocks
 	 */
 	@RequestMapping(value = "/with/{what}", method = RequestMethod.GET)
-	@Transactional(readOnly = true)
 	public WithWrapper with(@PathVariable("what") String what) {
 
-		logger.info("Entering /blockchain/with/{newcomers,certs,actives,leavers,excluded,ud,tx}");
-		Stream<Block> st;
-		switch (what) {
-		case "newcomers":
-			st = repository.with(block -> !block.getJoiners().isEmpty());
-			break;
-		case "certs":
-			st = repository.with(block -> !block.getCertifications().isEmpty());
-			break;
-		case "actives":
-			st = repository.with(block -> !block.getActives().isEmpty());
-			break;
-		case "leavers":
-			st = repository.with(block -> !block.getLeavers().isEmpty());
-			break;
-		case "excluded":
-			st = repository.with(block -> !block.getExcluded().isEmpty());
-			break;
-		case "ud":
-			st = repository.with(block -> block.getDividend() != null);
-			break;
-		case "tx":
-		default:
-			st = repository.with(block -> !block.getTransactions().isEmpty());
-		}
-
-		try (Stream<Integer> items = st.map(b -> b.getNumber())) {
-			return new WithWrapper(items.collect(Collectors.toList()));
-		} catch (Exception e) {
-			logger.error(e);
-			return null;
-		}
+		logger.info("Entering /blockchain/with/{newcomers,certs,actives,leavers,revoked,excluded,ud,tx}");
+		var intersect = what.contains("+");
+		var categories = Arrays.stream(what.split("[+,]")) //
+				.map(w -> WithIndex.Category.of(w).orElseThrow(
+						() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown category : " + w))) //
+				.toArray(WithIndex.Category[]::new);
 
+		return new WithWrapper(
+				WithIndex.toList(intersect ? withIndex.intersection(categories) : withIndex.union(categories)));
 	}
 
 	/**
@@ -193,19 +326,27 @@ public class BlockchainService {
 	}
 
 	/**
-	 * Fetch a block and save it synchronously
+	 * Fetch a block, hedged across two peers picked by the registry, and save it
+	 * synchronously if it is valid and chains to the stored blocks around it
 	 * 
 	 * @param id the block id
 	 */
 	@Transactional
 	private Block fetchBlock(String id) {
-		String url = Constants.Defaults.NODE + "blockchain/" + id;
-		logger.info("Fetching block : " + url);
+		logger.info("Fetching block : " + id);
 		Block block = null;
 		try {
-			TimeUnit.MILLISECONDS.sleep(200);
-			block = restTemplate.getForObject(url, Block.class);
-			block = repository.findTop1ByNumber(block.getNumber()).orElse(block);
+			block = http.hedged(peerRegistry.pick(2), node -> peerRegistry.timedAsync(node, //
+					() -> http.get(node + "blockchain/" + id, Block.class))).join();
+			var stored = repository.findTop1ByNumber(block.getNumber());
+			if (stored.isPresent())
+				return stored.get();
+
+			var errors = errors(List.of(block));
+			if (!errors.isEmpty()) {
+				logger.warn("Invalid block " + id + " : " + errors);
+				return null;
+			}
 			block = repository.save(block);
 
 			logger.info("... saved block : " + block);
@@ -226,39 +367,101 @@ public class BlockchainService {
 	@Transactional
 	public List<Block> fetchBlocks(String url) {
 		try {
-			TimeUnit.MILLISECONDS.sleep(30);
+			var body = http.retry(() -> http.get(url, BLOCKS)).join();
 
-			var responseEntity = restTemplate.exchange(url, HttpMethod.GET, null,
-					new ParameterizedTypeReference<List<Block>>() {
-					});
-			var body = responseEntity.getBody();
-			var contentType = responseEntity.getHeaders().getContentType().toString();
-			var statusCode = responseEntity.getStatusCode().getReasonPhrase();
-
-			logger.info("Fetched: " + url + "... Status: " + statusCode + " ContentType: " + contentType);
+			logger.info("Fetched: " + url + "... " + body.size() + " blocks");
 			return body;
 
-		} catch (InterruptedException e) {
-			logger.error(Constants.Logs.INTERRUPTED);
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.warn("Could not fetch " + url + " : " + e.getMessage());
 		}
 		return null;
 	}
 
-	private void bulkLoad(int bulkSize) {
-		var lastBLock = current().getNumber();
-		var nbPackage = Integer.divideUnsigned(lastBLock, bulkSize);
+	/**
+	 * Fetch the missing numbers, one /blocks/ request per run of consecutive
+	 * numbers, each hedged across two peers picked by the registry, at most
+	 * juniter.bma.fetchInflight in flight. Each run of consecutive blocks fetched
+	 * is dropped if it does not validate.
+	 * 
+	 * @param missing block numbers
+	 * @return the valid blocks that could be fetched, sorted by number
+	 */
+	private List<Block> fetchMissing(ImmutableRoaringBitmap missing) {
+		var requests = new ArrayList<CompletableFuture<List<Block>>>();
+		var permits = new Semaphore(fetchInflight);
+		var numbers = missing.toArray();
+		for (int i = 0; i < numbers.length;) {
+			int j = i;
+			while (j + 1 < numbers.length && numbers[j + 1] == numbers[j] + 1
+					&& j + 1 - i < Constants.Defaults.BULK_BATCH_SIZE) {
+				j++;
+			}
+			final var path = "blockchain/blocks/" + (j - i + 1) + "/" + numbers[i];
+			permits.acquireUninterruptibly();
+			requests.add(http.hedged(peerRegistry.pick(2), node -> peerRegistry.timedAsync(node, //
+					() -> http.get(node + path, BLOCKS))) //
+					.exceptionally(ex -> {
+						logger.warn("Could not fetch " + path + " : " + ex.getMessage());
+						return List.of();
+					}) //
+					.whenComplete((blocks, ex) -> permits.release()));
+			i = j + 1;
+		}
+
+		var fetched = new TreeMap<Integer, Block>();
+		CompletableFutures.allOfToList(requests).join().stream() //
+				.filter(Objects::nonNull) // a peer answering null
+				.flatMap(List::stream) //
+				.filter(b -> b.getNumber() != null && missing.contains(b.getNumber())) //
+				.forEach(b -> fetched.putIfAbsent(b.getNumber(), b));
+
+		var res = new ArrayList<Block>();
+		var run = new ArrayList<Block>();
+		for (var block : fetched.values()) {
+			if (!run.isEmpty() && block.getNumber() != run.get(run.size() - 1).getNumber() + 1) {
+				res.addAll(valid(run));
+				run.clear();
+			}
+			run.add(block);
+		}
+		res.addAll(valid(run));
+		return res;
+	}
 
-		var result = IntStream.range(0, nbPackage)// get nbPackage Integers
-				.map(nbb -> (nbb * bulkSize)).boxed() // with an offset of bulkSize
-				.sorted().parallel() // parallel stream if needed
-				.map(i -> peeringService.randomPeer() + "/blockchain/blocks/" + bulkSize + "/" + i) // build the url
-				.map(url -> fetchBlocks(url)) // Actually fetch the document containing a list of blocks
-				.map(list -> repository.saveAll(list)) // persist the collection
-				.flatMap(blocks -> blocks.stream()) // put stream as a single collection
-				.map(bl -> bl.getNumber()).collect(Collectors.toList());
+	/**
+	 * @param run consecutive blocks sorted by number
+	 * @return the run, empty if it does not validate
+	 */
+	private List<Block> valid(List<Block> run) {
+		if (run.isEmpty())
+			return List.of();
+
+		var errors = errors(run);
+		if (!errors.isEmpty()) {
+			logger.warn("Dropping the invalid blocks " + run.get(0).getNumber() + " to "
+					+ run.get(run.size() - 1).getNumber() + " : " + errors);
+			return List.of();
+		}
+		return new ArrayList<Block>(run);
+	}
 
-		logger.info("Bulkloaded " + result.size());
+	/**
+	 * Checks blocks fetched from a peer as the {@link juniter.service.async.BulkLoader}
+	 * does : hashes, signatures, and the chain with the stored blocks before and
+	 * after them
+	 *
+	 * @param run consecutive blocks sorted by number
+	 * @return what is wrong with them, empty if they can be stored
+	 */
+	private List<String> errors(List<Block> run) {
+		final var first = run.get(0);
+		final var last = run.get(run.size() - 1);
+		var previous = repository.findTop1ByNumber(first.getNumber() - 1).orElse(null);
+
+		var errors = new ArrayList<String>(validator.validate(previous, run));
+		repository.findTop1ByNumber(last.getNumber() + 1)
+				.ifPresent(next -> errors.addAll(validator.validate(last, List.of(next))));
+		return errors;
 	}
 }
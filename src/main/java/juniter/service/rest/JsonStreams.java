@@ -0,0 +1,106 @@
+package juniter.service.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a Stream of pages of entities to the response as it is read
+ *
+ * <pre>
+ *  - a JSON array by default, one document per line if the client accepts application/x-ndjson
+ *  - the stream is opened in its own read only transaction, on the thread writing the response
+ *  - the persistence context is cleared after each page, so the heap stays flat
+ * </pre>
+ *
+ * @author ben
+ *
+ */
+@Component
+public class JsonStreams {
+
+	private static final Logger logger = LogManager.getLogger();
+
+	public static final String NDJSON = "application/x-ndjson";
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Autowired
+	private PlatformTransactionManager txManager;
+
+	@PersistenceContext
+	private EntityManager em;
+
+	/**
+	 * For sources read by pages, ie: a range query whose collections are loaded
+	 * for the whole page. The persistence context is cleared after each page so
+	 * that no entity is detached before it is written.
+	 *
+	 * @param accept the Accept header of the request, may be null
+	 * @param pages  opened once the response is being written
+	 */
+	public <T> ResponseEntity<StreamingResponseBody> streamPages(String accept, Supplier<Stream<List<T>>> pages) {
+		final boolean ndjson = accept != null && accept.contains(NDJSON);
+		return ResponseEntity.ok() //
+				.contentType(ndjson ? MediaType.parseMediaType(NDJSON) : MediaType.APPLICATION_JSON_UTF8) //
+				.body(out -> write(out, pages, ndjson));
+	}
+
+	private <T> void write(OutputStream out, Supplier<Stream<List<T>>> source, boolean ndjson) {
+		var template = new TransactionTemplate(txManager);
+		template.setReadOnly(true);
+		template.execute(status -> {
+			int count = 0;
+			try (var items = source.get();
+					var gen = mapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+				if (ndjson) {
+					gen.setRootValueSeparator(null);
+				} else {
+					gen.writeStartArray();
+				}
+
+				for (var it = items.iterator(); it.hasNext();) {
+					for (var item : it.next()) {
+						gen.writeObject(item);
+						if (ndjson)
+							gen.writeRaw('\n');
+						count++;
+					}
+
+					gen.flush();
+					em.clear();
+				}
+
+				if (!ndjson)
+					gen.writeEndArray();
+			} catch (IOException e) {
+				// mostly the client going away
+				logger.warn("Stream interrupted after " + count + " items : " + e.getMessage());
+				throw new UncheckedIOException(e);
+			}
+			logger.debug("Streamed " + count + " items");
+			return count;
+		});
+	}
+
+}
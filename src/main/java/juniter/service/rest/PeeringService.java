@@ -1,18 +1,21 @@
 package juniter.service.rest;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,13 +23,18 @@ import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
 import juniter.model.bma.PeerDoc;
 import juniter.model.net.Peer;
 import juniter.repository.EndPointsRepository;
 import juniter.repository.PeersRepository;
+import juniter.service.PeerClient;
+import juniter.service.PeerCrawler;
+import juniter.service.PeerRegistry;
 import juniter.utils.Constants;
 
 /**
@@ -45,20 +53,26 @@ public class PeeringService {
 	public static final Logger logger = LogManager.getLogger();
 	// private static final String ERROR_MESSAGE = "";
 
-	Random random = new Random();
-
-	final private List<String> nodesURL = new ArrayList<String>();
-	{
-		nodesURL.add(Constants.Defaults.NODE);
-	}
-
 	@Autowired
 	private PeersRepository peerRepo;
 
 	@Autowired
 	private EndPointsRepository endPointRepo;
 
-	private RestTemplate restTpl = new RestTemplate();
+	@Autowired
+	private PeerRegistry peerRegistry;
+
+	@Autowired
+	private RestTemplate restTpl;
+
+	@Autowired
+	private PeerClient http;
+
+	@Autowired
+	private PeerCrawler crawler;
+
+	@Value("${juniter.crawler.atStartup:true}")
+	private boolean crawlAtStartup;
 
 	@Transactional
 	@RequestMapping("/")
@@ -67,6 +81,15 @@ public class PeeringService {
 		return endPointRepo.enpointsURL();
 	}
 
+	/**
+	 * @return the known nodes, cheapest first, with their latency, error rate and
+	 *         head
+	 */
+	@RequestMapping(value = "/nodes", method = RequestMethod.GET)
+	public List<PeerRegistry.Node> nodesStats() {
+		return peerRegistry.stats();
+	}
+
 	@RequestMapping(value = "/html", method = RequestMethod.GET)
 	public String init(@ModelAttribute("model") ModelMap model) {
 		logger.info("Entering /network/html ... ");
@@ -90,7 +113,7 @@ public class PeeringService {
 	}
 
 	public PeerDoc fetchPeers(String nodeURL) {
-		ResponseEntity<PeerDoc> responseEntity = new RestTemplate().exchange(nodeURL + "/network/peers", HttpMethod.GET,
+		ResponseEntity<PeerDoc> responseEntity = restTpl.exchange(nodeURL + "/network/peers", HttpMethod.GET,
 				null, new ParameterizedTypeReference<PeerDoc>() {
 				});
 		var peers = responseEntity.getBody();
@@ -115,74 +138,92 @@ public class PeeringService {
 				});
 	}
 
+	/**
+	 * @return a fast and up to date node, see {@link PeerRegistry#pick(Set)}
+	 */
 	public String randomPeer() {
-		reloadURL();
-		Collections.shuffle(nodesURL);
-		return nodesURL.get(random.nextInt(nodesURL.size()));
+		return peerRegistry.pick(Set.of());
 	}
 
-	private List<String> reloadURL() {
-		endPointRepo.enpointsURL() //
-				.forEach(url -> {//
-					if (!nodesURL.contains(url))
-						nodesURL.add(url);
-				});
-		return nodesURL;
+	/**
+	 * @return a snapshot of the known nodes' URL, cheapest first
+	 */
+	public List<String> nodes() {
+		return peerRegistry.ranked();
 	}
 
-	@Async
+	/**
+	 * Non blocking, the peers found are saved as they arrive
+	 * 
+	 * @return the peers of the node at nodeURL, null if it could not be reached
+	 */
 	public CompletableFuture<PeerDoc> findPeers(String nodeURL) {
 		var url = nodeURL + (nodeURL.endsWith("/") ? "" : "/") + "network/peers";
 
 		logger.info("Looking up for peers at  " + url);
 		var time = System.nanoTime();
-		PeerDoc results;
-		try {
-			results = restTpl.getForObject(url, PeerDoc.class);
-			var elapsedTime = Long.divideUnsigned(System.nanoTime() - time, 1000000);
-			logger.info("... took " + elapsedTime + " ms for " + url + " " + results.getPeers().size() + " found peers");
-			results.timeMillis = elapsedTime;
-			save(results);
-			return CompletableFuture.completedFuture(results)//
-					.handle((peerDoc, ex) -> {
-						if (ex == null) {
-							logger.debug("Completed Future : " + peerDoc + " " + peerDoc.getPeers().size());
-						} else {
-							logger.error("UNcompleted Future for peerDoc: " + peerDoc, ex);
-						}
-						return peerDoc;
-					});
-		}catch(Exception e) {
-			logger.error("TODO : stop  findPeers : " + e.getMessage());
-		}
-		return null ;
+		return peerRegistry.timedAsync(nodeURL, () -> http.get(url, PeerDoc.class)) //
+				.thenApply(results -> {
+					var elapsedTime = Long.divideUnsigned(System.nanoTime() - time, 1000000);
+					logger.info("... took " + elapsedTime + " ms for " + url + " " + results.getPeers().size()
+							+ " found peers");
+					results.timeMillis = elapsedTime;
+					save(results);
+					return results;
+				}) //
+				.exceptionally(e -> {
+					logger.warn("Could not find peers at " + url + " : " + e.getMessage());
+					return null;
+				});
 	}
 
-	@Async
-	@Transactional
+	/**
+	 * Crawls the network, see {@link PeerCrawler}, then saves one document per
+	 * peer found
+	 * 
+	 * @return the documents of the nodes that answered, maybe partial
+	 */
 	public CompletableFuture<List<PeerDoc>> findOtherPeers() {
 		logger.info("Find other peers ");
 
-		var compute = reloadURL() //
-				.parallelStream() //
-				.map(url -> CompletableFuture.supplyAsync(() -> findPeers(url)).join())
-				.map(CompletableFuture::join)
-				.collect(Collectors.toList());
-		
-		logger.info("Found other peers ");
+		return crawler.crawl().thenApply(crawl -> {
+			save(new PeerDoc(new ArrayList<Peer>(crawl.peers())));
+			return crawl.docs();
+		});
+	}
+
+	/**
+	 * @return the running or the last crawl, 404 if none ever started
+	 */
+	@RequestMapping(value = "/crawl", method = RequestMethod.GET)
+	public PeerCrawler.Crawl crawl() {
+		var current = crawler.current();
+		if (current == null)
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No crawl yet, POST /network/crawl starts one");
+		return current;
+	}
 
-		return CompletableFuture.completedFuture(compute);
+	/**
+	 * Starts a crawl, unless one is running
+	 *
+	 * @return the running crawl
+	 */
+	@RequestMapping(value = "/crawl", method = RequestMethod.POST)
+	@ResponseStatus(HttpStatus.ACCEPTED)
+	public PeerCrawler.Crawl startCrawl() {
+		var current = crawler.current();
+		if (current == null || current.isDone()) {
+			findOtherPeers();
+		}
+		return crawler.current();
 	}
-	
-//	var futures = reloadURL() //
-//			.stream() //
-//			.map(url -> CompletableFuture // 
-//					.completedFuture(restTpl.getForObject(url, PeerDoc.class)) // 
-//					.completeOnTimeout(null, 5, TimeUnit.SECONDS) // 
-//					.exceptionally(ex -> null))
-//			.map(CompletableFuture::join)//
-//			.collect(Collectors.toList());
 
+	@EventListener(ApplicationReadyEvent.class)
+	public void discover() {
+		if (crawlAtStartup) {
+			findOtherPeers();
+		}
+	}
 
 	@Async
 	public CompletableFuture<PeerDoc> findFirstPeers() {
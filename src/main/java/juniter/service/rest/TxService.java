@@ -2,8 +2,6 @@ package juniter.service.rest;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -11,15 +9,20 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import juniter.model.bma.Sources;
 import juniter.model.bma.TxHistory;
 import juniter.model.persistence.tx.Transaction;
+import juniter.model.persistence.tx.TxHistoryEntry.Direction;
 import juniter.repository.TxRepository;
+import juniter.service.index.SourcesIndex;
 
 /**
  * Handles publication of transaction documents
@@ -38,8 +41,8 @@ public class TxService {
 	@Autowired
 	private TxRepository repository;
 
-//	@Autowired
-//	private TxInRepository inRepo;
+	@Autowired(required = false)
+	private SourcesIndex sourcesIndex;
 
 	@RequestMapping(value = "/", method = RequestMethod.GET)
 	void handle(HttpServletResponse response) throws IOException {
@@ -51,25 +54,7 @@ public class TxService {
 	public TxHistory history(@PathVariable("pubkey") String pubkey) {
 		// TODO: COMPLETE the history and tidy the result if need be to match the
 		// duniter api exactly
-		List<Transaction> sent = new ArrayList<Transaction>();
-		List<Transaction> received = new ArrayList<Transaction>();
-		List<Transaction> receiving = new ArrayList<Transaction>();
-		List<Transaction> sending = new ArrayList<Transaction>();
-		List<Transaction> pending = new ArrayList<Transaction>();
-
-		try (var s = repository.streamTransactionSentBy(pubkey)) {
-			sent.addAll(s.collect(Collectors.toList()));
-		} catch (Exception e) {
-			logger.error("tx/history TransactionSentBy ", e);
-		}
-
-		try (var s = repository.streamTransactionReceivedBy(pubkey)) {
-			received.addAll(s.collect(Collectors.toList()));
-		} catch (Exception e) {
-			logger.error("tx/history TransactionReceivedBy ", e);
-		}
-
-		return new TxHistory(pubkey, sent, received, receiving, sending, pending);
+		return historyFilterByBlockRange(pubkey, 0, Integer.MAX_VALUE);
 	}
 
 	@Transactional(readOnly = true)
@@ -79,22 +64,39 @@ public class TxService {
 	}
 
 	@RequestMapping(value = "/sources/{pubkey}", method = RequestMethod.GET)
-	public String sources(@PathVariable("pubkey") String pubkey) {
+	public Sources sources(@PathVariable("pubkey") String pubkey) {
 		logger.info("Entering /sources/{pubkey= " + pubkey+ "}");
-		return "not implemented yet";
+		if (sourcesIndex == null)
+			throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "juniter.sources.enabled is false");
+
+		return new Sources(sourcesIndex.getCurrency(), pubkey, sourcesIndex.sources(pubkey));
 	}
 
+	@Transactional(readOnly = true)
 	@RequestMapping(value = "/history/{pubkey}/blocks/{from}/{to}", method = RequestMethod.GET)
-	public String historyFilterByBlockRange(@PathVariable("pubkey") String pubkey, @PathVariable("pubkey") String from,
-			@PathVariable("pubkey") String to) {
+	public TxHistory historyFilterByBlockRange(@PathVariable("pubkey") String pubkey,
+			@PathVariable("from") Integer from, @PathVariable("to") Integer to) {
 		logger.info("Entering /history/{pubkey}/blocks/{from}/{to}.. " + pubkey + " " + from + "->" + to);
-		return "not implemented yet";
+
+		var sent = repository.historyByBlocks(pubkey, Direction.SENT, from, to);
+		var received = repository.historyByBlocks(pubkey, Direction.RECEIVED, from, to);
+		return new TxHistory(pubkey, sent, received, new ArrayList<Transaction>(), new ArrayList<Transaction>(),
+				new ArrayList<Transaction>());
 	}
 
+	/**
+	 * @param from medianTime, inclusive
+	 * @param to   medianTime, inclusive
+	 */
+	@Transactional(readOnly = true)
 	@RequestMapping(value = "/history/{pubkey}/times/{from}/{to}", method = RequestMethod.GET)
-	public String historyFilterByTimeRange(@PathVariable("pubkey") String pubkey, @PathVariable("pubkey") String from,
-			@PathVariable("pubkey") String to) {
+	public TxHistory historyFilterByTimeRange(@PathVariable("pubkey") String pubkey, @PathVariable("from") Long from,
+			@PathVariable("to") Long to) {
 		logger.info("Entering /history/{pubkey}/times/{from}/{to}.. " + pubkey + " " + from + "->" + to);
-		return "not implemented yet";
+
+		var sent = repository.historyByTimes(pubkey, Direction.SENT, from, to);
+		var received = repository.historyByTimes(pubkey, Direction.RECEIVED, from, to);
+		return new TxHistory(pubkey, sent, received, new ArrayList<Transaction>(), new ArrayList<Transaction>(),
+				new ArrayList<Transaction>());
 	}
 }
@@ -1,8 +1,6 @@
 package juniter.service.rest;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -10,14 +8,20 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import juniter.model.persistence.wot.Certification;
-import juniter.repository.CertsRepository;
+import juniter.model.bma.WotCerts;
+import juniter.model.bma.WotIdentity;
+import juniter.model.bma.WotLookup;
+import juniter.model.bma.WotMembers;
+import juniter.model.bma.WotRequirements;
+import juniter.service.index.DistanceRule;
+import juniter.service.index.WotGraph;
 
 @RestController
 @ConditionalOnExpression("${juniter.bma.enabled:false}")
@@ -25,11 +29,11 @@ import juniter.repository.CertsRepository;
 public class WotService {
 	private static final Logger logger = LogManager.getLogger();
 
-	@Autowired
-	private CertsRepository wotRepo;
+	@Autowired(required = false)
+	private WotGraph wot;
 
-//	@Autowired
-//	private TxInRepository inRepo;
+	@Autowired(required = false)
+	private DistanceRule distanceRule;
 
 	@RequestMapping(value = "/", method = RequestMethod.GET)
 	void handle(HttpServletResponse response) throws IOException {
@@ -37,42 +41,51 @@ public class WotService {
 	}
 	
 	@RequestMapping(value = "/requirements/{pubkey}", method = RequestMethod.GET)
-	public String requirements(@PathVariable("pubkey") String pubkeyOrUid) {
+	public WotRequirements requirements(@PathVariable("pubkey") String pubkeyOrUid) {
 		logger.info("Entering /wot/requirements/{pubkey= " + pubkeyOrUid+ "}");
-		return "not implemented yet";
+		return found(wot().requirements(pubkeyOrUid, distanceRule::outcome), pubkeyOrUid);
 	}
 
-	@Transactional(readOnly=true)
 	@RequestMapping(value = "/certifiers-of/{pubkeyOrUid}", method = RequestMethod.GET)
-	public List<Certification> certifiersOf(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
+	public WotCerts certifiersOf(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
 		logger.info("Entering /wot/certifiers-of/{pubkeyOrUid= " + pubkeyOrUid+ "}");
-		
-		return wotRepo.streamCertifiersOf(pubkeyOrUid).collect(Collectors.toList());
+		return found(wot().certifiersOf(pubkeyOrUid), pubkeyOrUid);
 	}
 
-	@Transactional(readOnly=true)
 	@RequestMapping(value = "/certified-by/{pubkeyOrUid}", method = RequestMethod.GET)
-	public List<Certification> certifiedBy(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
+	public WotCerts certifiedBy(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
 		logger.info("Entering /wot/certified-by/{pubkeyOrUid= " + pubkeyOrUid+ "}");
-		return  wotRepo.streamCertifiedBy(pubkeyOrUid).collect(Collectors.toList());
+		return found(wot().certifiedBy(pubkeyOrUid), pubkeyOrUid);
 	}
 	
 	@RequestMapping(value = "/identity-of/{pubkeyOrUid}", method = RequestMethod.GET)
-	public String identityOf(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
+	public WotIdentity identityOf(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
 		logger.info("Entering /wot/identity-of/{pubkeyOrUid= " + pubkeyOrUid+ "}");
-		return "not implemented yet";
+		return found(wot().identityOf(pubkeyOrUid), pubkeyOrUid);
 	}
 
 
 	@RequestMapping(value = "/lookup/{pubkeyOrUid}", method = RequestMethod.GET)
-	public String lookup(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
+	public WotLookup lookup(@PathVariable("pubkeyOrUid") String pubkeyOrUid) {
 		logger.info("Entering /wot/lookup/{pubkeyOrUid= " + pubkeyOrUid+ "}");
-		return "not implemented yet";
+		return wot().lookup(pubkeyOrUid);
 	}
 	
 	@RequestMapping(value = "/members", method = RequestMethod.GET)
-	public String members() {
+	public WotMembers members() {
 		logger.info("Entering /wot/members");
-		return "not implemented yet";
+		return wot().members();
+	}
+
+	private WotGraph wot() {
+		if (wot == null)
+			throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "juniter.wot.enabled is false");
+		return wot;
+	}
+
+	private static <T> T found(T res, String pubkeyOrUid) {
+		if (res == null)
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No identity for " + pubkeyOrUid);
+		return res;
 	}
 }
@@ -23,15 +23,15 @@ package juniter.utils;
  */
 
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import juniter.exception.AddressFormatException;
 
 /**
  * <p>Base58 is a way to encode Bitcoin addresses as numbers and letters. Note that this is not the same base58 as used by
  * Flickr, which you may see reference to around the internet.</p>
  *
- * <p>You may instead wish to work with {@link VersionedChecksummedBytes}, which adds support for testing the prefix
+ * <p>You may instead wish to work with VersionedChecksummedBytes, which adds support for testing the prefix
  * and suffix bytes commonly found in addresses.</p>
  *
  * <p>Satoshi says: why base-58 instead of standard base-64 encoding?<p>
@@ -43,151 +43,133 @@ import java.security.NoSuchAlgorithmException;
  * <li>E-mail usually won't line-break if there's no punctuation to break at.</li>
  * <li>Doubleclicking selects the whole number as one word if it's all alphanumeric.</li>
  * </ul>
+ *
+ * <p>The number is handled by 32 bits limbs, five base58 digits at a time (58^5 &lt; 2^32) : a
+ * 32 bytes key takes 9 multiply-add passes to decode instead of 44 byte by byte divisions.</p>
  */
 public class Base58 {
     public static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
-    private static final MessageDigest digest;
-    static {
-        try {
-            digest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);  // Can't happen.
-        }
-    }
+
     private static final int[] INDEXES = new int[128];
     static {
-        for (int i = 0; i < INDEXES.length; i++) {
-            INDEXES[i] = -1;
-        }
+        Arrays.fill(INDEXES, -1);
         for (int i = 0; i < ALPHABET.length; i++) {
             INDEXES[ALPHABET[i]] = i;
         }
     }
 
+    /** 58^0 .. 58^5, the largest power fitting in an unsigned int */
+    private static final long[] POWERS = { 1L, 58L, 58L * 58, 58L * 58 * 58, 58L * 58 * 58 * 58, 58L * 58 * 58 * 58 * 58 };
+
+    private static final int DIGITS_PER_LIMB = 5;
+
+    private static final long LIMB_DIVISOR = POWERS[DIGITS_PER_LIMB];
+
+    private static final long MASK = 0xFFFFFFFFL;
+
     /** Encodes the given bytes in base58. No checksum is appended. */
     public static String encode(byte[] input) {
         if (input.length == 0) {
             return "";
-        }       
-        input = copyOfRange(input, 0, input.length);
-        // Count leading zeroes.
+        }
+        // Count leading zeroes, they are encoded as '1'
         int zeroCount = 0;
         while (zeroCount < input.length && input[zeroCount] == 0) {
             ++zeroCount;
         }
-        // The actual encoding.
-        byte[] temp = new byte[input.length * 2];
-        int j = temp.length;
-
-        int startAt = zeroCount;
-        while (startAt < input.length) {
-            byte mod = divmod58(input, startAt);
-            if (input[startAt] == 0) {
+
+        // Big endian limbs of the remaining bytes
+        final int size = input.length - zeroCount;
+        final int[] limbs = new int[(size + 3) / 4];
+        for (int i = zeroCount, shift = (4 - size % 4) % 4; i < input.length; i++, shift++) {
+            limbs[shift / 4] = (limbs[shift / 4] << 8) | (input[i] & 0xFF);
+        }
+
+        // log(256) / log(58) < 1.366, plus a whole group of padding digits
+        final char[] out = new char[zeroCount + size * 1366 / 1000 + 1 + DIGITS_PER_LIMB];
+        int j = out.length;
+        int startAt = 0;
+        while (startAt < limbs.length) {
+            // number -> number / 58^5, five digits out of the remainder
+            long remainder = 0;
+            for (int i = startAt; i < limbs.length; i++) {
+                final long current = (remainder << 32) | (limbs[i] & MASK);
+                limbs[i] = (int) (current / LIMB_DIVISOR);
+                remainder = current % LIMB_DIVISOR;
+            }
+            while (startAt < limbs.length && limbs[startAt] == 0) {
                 ++startAt;
             }
-            temp[--j] = (byte) ALPHABET[mod];
+            for (int d = 0; d < DIGITS_PER_LIMB; d++) {
+                out[--j] = ALPHABET[(int) (remainder % 58)];
+                remainder /= 58;
+            }
         }
 
-        // Strip extra '1' if there are some after decoding.
-        while (j < temp.length && temp[j] == ALPHABET[0]) {
+        // Strip the '1' the last group was padded with
+        while (j < out.length && out[j] == ALPHABET[0]) {
             ++j;
         }
         // Add as many leading '1' as there were leading zeros.
         while (--zeroCount >= 0) {
-            temp[--j] = (byte) ALPHABET[0];
-        }
-
-        byte[] output = copyOfRange(temp, j, temp.length);
-        try {
-            return new String(output, "US-ASCII");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);  // Cannot happen.
+            out[--j] = ALPHABET[0];
         }
+        return new String(out, j, out.length - j);
     }
 
-    public static byte[] decode(String input) throws Exception {
-        if (input.length() == 0) {
+    public static byte[] decode(String input) throws AddressFormatException {
+        final int length = input.length();
+        if (length == 0) {
             return new byte[0];
         }
-        byte[] input58 = new byte[input.length()];
-        // Transform the String to a base58 byte sequence
-        for (int i = 0; i < input.length(); ++i) {
-            char c = input.charAt(i);
-
-            int digit58 = -1;
-            if (c >= 0 && c < 128) {
-                digit58 = INDEXES[c];
-            }
-            if (digit58 < 0) {
-                throw new Exception("Illegal character " + c + " at " + i);
-            }
-
-            input58[i] = (byte) digit58;
-        }
-        // Count leading zeroes
+        // Count leading '1', they are decoded as zeroes
         int zeroCount = 0;
-        while (zeroCount < input58.length && input58[zeroCount] == 0) {
+        while (zeroCount < length && input.charAt(zeroCount) == ALPHABET[0]) {
             ++zeroCount;
         }
-        // The encoding
-        byte[] temp = new byte[input.length()];
-        int j = temp.length;
-
-        int startAt = zeroCount;
-        while (startAt < input58.length) {
-            byte mod = divmod256(input58, startAt);
-            if (input58[startAt] == 0) {
-                ++startAt;
+
+        // Little endian limbs, log(58) / log(2^32) < 0.1831
+        final int[] limbs = new int[(length - zeroCount) * 1831 / 10000 + 1];
+        int used = 0;
+        for (int i = zeroCount; i < length;) {
+            // up to five digits as one number
+            final int count = Math.min(DIGITS_PER_LIMB, length - i);
+            long group = 0;
+            for (final int end = i + count; i < end; i++) {
+                group = group * 58 + digit(input, i);
             }
 
-            temp[--j] = mod;
-        }
-        // Do no add extra leading zeroes, move j to first non null byte.
-        while (j < temp.length && temp[j] == 0) {
-            ++j;
+            // number -> number * 58^count + group
+            final long multiplier = POWERS[count];
+            long carry = group;
+            for (int l = 0; l < used; l++) {
+                final long current = (limbs[l] & MASK) * multiplier + carry;
+                limbs[l] = (int) current;
+                carry = current >>> 32;
+            }
+            if (carry != 0) {
+                limbs[used++] = (int) carry;
+            }
         }
 
-        return copyOfRange(temp, j - zeroCount, temp.length);
-    }
-    
-    //
-    // number -> number / 58, returns number % 58
-    //
-    private static byte divmod58(byte[] number, int startAt) {
-        int remainder = 0;
-        for (int i = startAt; i < number.length; i++) {
-            int digit256 = (int) number[i] & 0xFF;
-            int temp = remainder * 256 + digit256;
-
-            number[i] = (byte) (temp / 58);
-
-            remainder = temp % 58;
+        // Big endian bytes, without the leading zero bytes of the top limb
+        int significant = used * 4;
+        if (used > 0) {
+            significant -= Integer.numberOfLeadingZeros(limbs[used - 1]) / 8;
         }
-
-        return (byte) remainder;
-    }
-
-    //
-    // number -> number / 256, returns number % 256
-    //
-    private static byte divmod256(byte[] number58, int startAt) {
-        int remainder = 0;
-        for (int i = startAt; i < number58.length; i++) {
-            int digit58 = (int) number58[i] & 0xFF;
-            int temp = remainder * 58 + digit58;
-
-            number58[i] = (byte) (temp / 256);
-
-            remainder = temp % 256;
+        final byte[] output = new byte[zeroCount + significant];
+        for (int b = 0; b < significant; b++) {
+            output[output.length - 1 - b] = (byte) (limbs[b / 4] >>> (8 * (b % 4)));
         }
-
-        return (byte) remainder;
+        return output;
     }
 
-    private static byte[] copyOfRange(byte[] source, int from, int to) {
-        byte[] range = new byte[to - from];
-        System.arraycopy(source, from, range, 0, range.length);
-
-        return range;
+    private static int digit(String input, int i) throws AddressFormatException {
+        final char c = input.charAt(i);
+        final int digit58 = c < 128 ? INDEXES[c] : -1;
+        if (digit58 < 0) {
+            throw new AddressFormatException("Illegal character " + c + " at " + i);
+        }
+        return digit58;
     }
 }
@@ -59,6 +59,18 @@ public interface Constants {
     
     interface Defaults {
     	int BULK_BATCH_SIZE = 20;
+    	/**
+    	 * ids reserved per sequence call, pooled so that inserts can be batched 
+    	 */
+    	int ID_ALLOCATION_SIZE = 100;
+    	/**
+    	 * rows per round trip of a streamed query, without it the driver reads the whole result 
+    	 */
+    	int STREAM_FETCH_SIZE = 500;
+    	/**
+    	 * decoded public keys kept in memory, a few times the number of members 
+    	 */
+    	int PUBKEY_CACHE_SIZE = 16 * 1024;
     	String NODE = "https://g1.bertrandbenjamin.com/";
     }
    
@@ -23,18 +23,23 @@ package juniter.utils;
  */
 
 
-import com.lambdaworks.codec.Base64;
-
 import juniter.exception.AddressFormatException;
 import juniter.exception.TechnicalException;
+import jnr.ffi.byref.LongLongByReference;
 import org.abstractj.kalium.crypto.Util;
 
 import java.nio.charset.Charset;
+import java.util.Base64;
+
+import static org.abstractj.kalium.NaCl.Sodium.PUBLICKEY_BYTES;
+import static org.abstractj.kalium.NaCl.sodium;
 
 public class CryptoUtils extends Util {
 	
 	public static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
 	public static final Charset CHARSET_ASCII = Charset.forName("US-ASCII");
+
+	public static final int SIGNATURE_BYTES = 64;
 	
 	public static byte[] zeros(int n) {
         return new byte[n];
@@ -73,11 +78,11 @@ public class CryptoUtils extends Util {
 	
 
 	public static byte[] decodeBase64(String data) {
-		return Base64.decode(data.toCharArray());
+		return Base64.getDecoder().decode(data);
 	}
 	
 	public static String encodeBase64(byte[] data) {
-		return new String(Base64.encode(data));
+		return Base64.getEncoder().encodeToString(data);
 	}
 	
 	public static byte[] decodeBase58(String data) {
@@ -91,4 +96,49 @@ public class CryptoUtils extends Util {
 	public static String encodeBase58(byte[] data) {
 		return Base58.encode(data);
 	}
+
+	/**
+	 * @param pubkey base 58
+	 * @return the decoded key, through {@link PubKeyCache#SHARED} : shared, not to be modified
+	 */
+	public static byte[] decodePubKey(String pubkey) {
+		return PubKeyCache.SHARED.decode(pubkey);
+	}
+
+	/**
+	 * Ed25519 check of a detached signature, through libsodium
+	 *
+	 * @param message the signed bytes
+	 * @param signature base 64
+	 * @param pubkey base 58
+	 * @return false as well for a malformed signature or key
+	 */
+	public static boolean verify(byte[] message, String signature, String pubkey) {
+		final byte[] sig;
+		final byte[] key;
+		try {
+			sig = decodeBase64(signature);
+			key = decodePubKey(pubkey);
+		} catch (RuntimeException e) {
+			return false;
+		}
+		return verify(message, sig, key);
+	}
+
+	/**
+	 * @param message the signed bytes
+	 * @param signature 64 bytes
+	 * @param publicKey 32 bytes
+	 */
+	public static boolean verify(byte[] message, byte[] signature, byte[] publicKey) {
+		if (signature.length != SIGNATURE_BYTES || publicKey.length != PUBLICKEY_BYTES)
+			return false;
+
+		var sigAndMsg = new byte[SIGNATURE_BYTES + message.length];
+		System.arraycopy(signature, 0, sigAndMsg, 0, SIGNATURE_BYTES);
+		System.arraycopy(message, 0, sigAndMsg, SIGNATURE_BYTES, message.length);
+		var buffer = new byte[sigAndMsg.length];
+		return sodium().crypto_sign_ed25519_open(buffer, new LongLongByReference(0), sigAndMsg, sigAndMsg.length,
+				publicKey) == 0;
+	}
 }
@@ -38,6 +38,8 @@ import java.security.NoSuchAlgorithmException;
 public class DigestUtils {
     private static final char[] HEXITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
     private static final String SHA1_ALGORITHM = "SHA1";
+    private static final String SHA256_ALGORITHM = "SHA-256";
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> getInstance(SHA256_ALGORITHM));
     private static final String UTF_8 = "UTF-8";
 
     /**
@@ -78,8 +80,19 @@ public class DigestUtils {
     }
 
     public static MessageDigest getSHA1Instance() {
+        return getInstance(SHA1_ALGORITHM);
+    }
+
+    /**
+     * @return this thread's SHA-256 digest, to be reset before use
+     */
+    public static MessageDigest sha256() {
+        return SHA256.get();
+    }
+
+    private static MessageDigest getInstance(String algorithm) {
         try {
-            return MessageDigest.getInstance(SHA1_ALGORITHM);
+            return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
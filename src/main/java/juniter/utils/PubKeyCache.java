@@ -0,0 +1,160 @@
+package juniter.utils;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the base 58 public keys and their decoded bytes
+ *
+ * <pre>
+ *  - the same few thousand members issue most documents, each key is decoded once rather than per signature
+ *  - least recently used eviction, split in segments so that verifying threads seldom wait on each other
+ *  - both ways : {@link #decode(String)} and {@link #encode(byte[])}, a key met one way is cached the other way too
+ *  - a key that does not decode is not cached, the error is thrown each time
+ * </pre>
+ *
+ * The arrays handed out are shared : they must not be modified.
+ *
+ * @author ben
+ *
+ */
+public class PubKeyCache {
+
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * The instance CryptoUtils, the SignatureVerifier and PubKey go through
+	 */
+	public static final PubKeyCache SHARED = new PubKeyCache(Constants.Defaults.PUBKEY_CACHE_SIZE);
+
+	private final Segment<String, byte[]>[] decoded;
+
+	private final Segment<ByteBuffer, String>[] encoded;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	@SuppressWarnings("serial")
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	/**
+	 * @param capacity keys kept each way
+	 */
+	@SuppressWarnings("unchecked")
+	public PubKeyCache(int capacity) {
+		final int perSegment = Math.max(1, capacity / SEGMENTS);
+		decoded = new Segment[SEGMENTS];
+		encoded = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			decoded[i] = new Segment<>(perSegment);
+			encoded[i] = new Segment<>(perSegment);
+		}
+	}
+
+	/**
+	 * @param pubkey base 58
+	 * @return the decoded key, shared
+	 * @see CryptoUtils#decodeBase58(String)
+	 */
+	public byte[] decode(String pubkey) {
+		final var segment = segment(decoded, pubkey);
+		synchronized (segment) {
+			final var key = segment.get(pubkey);
+			if (key != null) {
+				hits.increment();
+				return key;
+			}
+		}
+
+		misses.increment();
+		final var key = CryptoUtils.decodeBase58(pubkey);
+		put(pubkey, key);
+		return key;
+	}
+
+	/**
+	 * @param key decoded public key, not kept
+	 * @return its base 58 form
+	 */
+	public String encode(byte[] key) {
+		final var wrapped = ByteBuffer.wrap(key);
+		final var segment = segment(encoded, wrapped);
+		synchronized (segment) {
+			final var pubkey = segment.get(wrapped);
+			if (pubkey != null) {
+				hits.increment();
+				return pubkey;
+			}
+		}
+
+		misses.increment();
+		final var pubkey = Base58.encode(key);
+		put(pubkey, key.clone());
+		return pubkey;
+	}
+
+	/**
+	 * Either way, a miss fills both
+	 */
+	private void put(String pubkey, byte[] key) {
+		final var wrapped = ByteBuffer.wrap(key);
+		final var decodedSegment = segment(decoded, pubkey);
+		synchronized (decodedSegment) {
+			decodedSegment.put(pubkey, key);
+		}
+		final var encodedSegment = segment(encoded, wrapped);
+		synchronized (encodedSegment) {
+			encodedSegment.put(wrapped, pubkey);
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (final var segment : decoded) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public void clear() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			synchronized (decoded[i]) {
+				decoded[i].clear();
+			}
+			synchronized (encoded[i]) {
+				encoded[i].clear();
+			}
+		}
+	}
+
+	/**
+	 * @return cached keys, hits and misses
+	 */
+	public String stats() {
+		return size() + " cached keys, " + hits.sum() + " hits, " + misses.sum() + " misses";
+	}
+
+	private static <K, V> Segment<K, V> segment(Segment<K, V>[] segments, Object key) {
+		final int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+
+}
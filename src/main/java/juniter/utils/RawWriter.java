@@ -0,0 +1,167 @@
+package juniter.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import juniter.model.Block;
+import juniter.model.persistence.tx.Transaction;
+
+/**
+ * Renders raw documents into one reusable buffer
+ *
+ * <pre>
+ *  - every document appends its own fields, ie: Identity.toRaw(StringBuilder), no String per line nor per section
+ *  - one writer per thread, {@link #get()} hands it back emptied
+ *  - {@link #utf8()} encodes into a reusable ByteBuffer, {@link #digest} feeds those bytes to a MessageDigest
+ * </pre>
+ *
+ * A writer is not reentrant : what {@link #get()} returned is overwritten by
+ * the next call on the same thread, the ByteBuffer of {@link #utf8()}
+ * included.
+ *
+ * @author ben
+ *
+ */
+public class RawWriter {
+
+	private static final int INITIAL = 16 * 1024;
+
+	/**
+	 * above that, a buffer is dropped rather than kept for the next document
+	 */
+	private static final int RETAINED = 1024 * 1024;
+
+	private static final ThreadLocal<RawWriter> LOCAL = ThreadLocal.withInitial(RawWriter::new);
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	private StringBuilder raw = new StringBuilder(INITIAL);
+
+	private ByteBuffer bytes = ByteBuffer.allocate(INITIAL);
+
+	/**
+	 * @return this thread's writer, emptied
+	 */
+	public static RawWriter get() {
+		var writer = LOCAL.get();
+		writer.reset();
+		return writer;
+	}
+
+	/**
+	 * Appends each document followed by a new line, ie: the sections of a block
+	 */
+	public static <T> StringBuilder lines(StringBuilder raw, List<T> docs, BiConsumer<T, StringBuilder> writer) {
+		for (var doc : docs) {
+			writer.accept(doc, raw);
+			raw.append('\n');
+		}
+		return raw;
+	}
+
+	public RawWriter block(Block block) {
+		block.toRaw(raw);
+		return this;
+	}
+
+	/**
+	 * @see Block#toInnerRaw(StringBuilder)
+	 */
+	public RawWriter inner(Block block) {
+		block.toInnerRaw(raw);
+		return this;
+	}
+
+	/**
+	 * @see Block#toSignedRaw(StringBuilder)
+	 */
+	public RawWriter signed(Block block) {
+		block.toSignedRaw(raw);
+		return this;
+	}
+
+	public RawWriter transaction(Transaction tx) {
+		tx.toRaw(raw);
+		return this;
+	}
+
+	public RawWriter append(CharSequence chars) {
+		raw.append(chars);
+		return this;
+	}
+
+	public StringBuilder builder() {
+		return raw;
+	}
+
+	public int length() {
+		return raw.length();
+	}
+
+	/**
+	 * @return the UTF-8 bytes of what was written, valid until the next use of
+	 *         this writer
+	 */
+	public ByteBuffer utf8() {
+		final int max = (int) (raw.length() * encoder.maxBytesPerChar());
+		if (bytes.capacity() < max) {
+			bytes = ByteBuffer.allocate(max);
+		}
+
+		bytes.clear();
+		encoder.reset();
+		try {
+			var res = encoder.encode(CharBuffer.wrap(raw), bytes, true);
+			if (!res.isUnderflow()) {
+				res.throwException();
+			}
+			encoder.flush(bytes);
+		} catch (CharacterCodingException e) {
+			throw new IllegalStateException("Not a valid raw document", e);
+		}
+		return bytes.flip();
+	}
+
+	/**
+	 * @return a copy of the UTF-8 bytes of what was written
+	 */
+	public byte[] toBytes() {
+		var buffer = utf8();
+		var res = new byte[buffer.remaining()];
+		buffer.get(res);
+		return res;
+	}
+
+	/**
+	 * @param md ie: SHA-256, reset by this call
+	 * @return the digest of the UTF-8 bytes of what was written
+	 */
+	public byte[] digest(MessageDigest md) {
+		md.reset();
+		md.update(utf8());
+		return md.digest();
+	}
+
+	@Override
+	public String toString() {
+		return raw.toString();
+	}
+
+	private void reset() {
+		if (raw.capacity() > RETAINED) {
+			raw = new StringBuilder(INITIAL);
+		} else {
+			raw.setLength(0);
+		}
+		if (bytes.capacity() > RETAINED) {
+			bytes = ByteBuffer.allocate(INITIAL);
+		}
+	}
+
+}
@@ -103,18 +103,34 @@ public class Validator {
 	}
 
 	/**
-	 *   return crypto
-	    .createHash("sha256")
-	    .update(str)
-	    .digest("hex")
-	    .toUpperCase()
-	 * @param b
-	 * @return
+	 * What inner_hash should be : the upper case hex SHA-256 of the raw block up to
+	 * "InnerHash: "
+	 */
+	public static String innerHash(Block b) {
+		return DigestUtils.encodeHex(RawWriter.get().inner(b).digest(DigestUtils.sha256()));
+	}
+
+	/**
+	 * What hash should be : the upper case hex SHA-256 of
+	 * "InnerHash: ...\nNonce: ...\n" followed by the signature and a new line
 	 */
 	public static String hash(Block b) {
-		var res = "";
-		String sha256hex = DigestUtils.sha1Hex(b.getRaw());
-		return res;
+		return DigestUtils.encodeHex(
+				RawWriter.get().signed(b).append(b.getSignature()).append("\n").digest(DigestUtils.sha256()));
 	}
-	
+
+	/**
+	 * The issuer signs "InnerHash: ...\nNonce: ...\n"
+	 */
+	public static boolean signatureIsValid(Block b) {
+		return CryptoUtils.verify(signedPart(b), b.getSignature(), b.getIssuer());
+	}
+
+	/**
+	 * @return the UTF-8 bytes the issuer signs
+	 */
+	public static byte[] signedPart(Block b) {
+		return RawWriter.get().signed(b).toBytes();
+	}
+
 }
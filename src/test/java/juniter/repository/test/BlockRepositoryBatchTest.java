@@ -0,0 +1,145 @@
+package juniter.repository.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+import juniter.model.event.BlockSavedEvent;
+import juniter.repository.BlockRepository;
+import juniter.repository.TxHistoryRepository;
+import juniter.repository.TxRepository;
+import juniter.service.TxHistoryIndexer;
+import juniter.service.index.WithIndex;
+import juniter.service.index.WithIndex.Category;
+
+/**
+ * saveAllInBatch bypasses the domain events : the head and the indexes must
+ * follow it all the same, once its transaction committed
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ TxHistoryIndexer.class, WithIndex.class })
+@TestPropertySource(properties = "juniter.index.dir=target/test-index")
+public class BlockRepositoryBatchTest {
+
+	@Autowired
+	private BlockRepository blockRepository;
+
+	@Autowired
+	private TxRepository txRepository;
+
+	@Autowired
+	private TxHistoryRepository historyRepository;
+
+	@Autowired
+	private WithIndex withIndex;
+
+	@Autowired
+	private TxHistoryIndexer indexer;
+
+	@After
+	public void tearDown() {
+		historyRepository.deleteAll();
+		blockRepository.deleteAll();
+	}
+
+	@Test
+	public void batchSaveAdvancesHeadAndIndexes() throws Exception {
+		// seeded on the empty database, only the events can fill them
+		assertThat(blockRepository.current()).isEqualTo(-1);
+		assertThat(withIndex.blocks(Category.TX)).isEmpty();
+
+		var mapper = new ObjectMapper();
+		var blocks = new ArrayList<Block>();
+		for (int i = 0; i <= 10; i++) {
+			blocks.add(mapper.readValue(new File(String.format("data/blocks/%07d.json", i)), Block.class));
+		}
+		var withTx = mapper.readValue(getClass().getClassLoader().getResourceAsStream("blocks/127128.json"),
+				Block.class);
+		blocks.add(withTx);
+
+		blockRepository.saveAllInBatch(blocks);
+
+		assertThat(blockRepository.current()).isEqualTo(127128);
+		assertThat(blockRepository.head().get().getHash()).isEqualTo(withTx.getHash());
+
+		assertThat(withIndex.blocks(Category.TX)).containsExactly(127128);
+		assertThat(withIndex.blocks(Category.NEWCOMERS)).contains(0);
+		assertThat(withIndex.missing(bitmap(0, 10))).isEmpty();
+
+		var tx = withTx.getTransactions().get(0);
+		assertThat(txRepository.transactionsSentBy(tx.getIssuers().get(0))) //
+				.extracting(t -> t.getHash()).containsOnlyOnce(tx.getHash());
+	}
+
+	@Test
+	public void savedAgainKeepsTheHistory() throws Exception {
+		var withTx = new ObjectMapper().readValue(
+				getClass().getClassLoader().getResourceAsStream("blocks/127128.json"), Block.class);
+		blockRepository.saveAllInBatch(List.of(withTx));
+		var entries = historyRepository.findAll();
+		assertThat(entries).isNotEmpty();
+
+		indexer.onBlockSaved(new BlockSavedEvent(withTx));
+
+		assertThat(historyRepository.findAll()).extracting(e -> e.getId())
+				.containsExactlyInAnyOrderElementsOf(entries.stream().map(e -> e.getId()).collect(Collectors.toList()));
+		var tx = withTx.getTransactions().get(0);
+		assertThat(txRepository.transactionsSentBy(tx.getIssuers().get(0))) //
+				.extracting(t -> t.getHash()).containsOnlyOnce(tx.getHash());
+	}
+
+	@Test
+	public void batchSaveSkipsStoredNumbers() throws Exception {
+		var mapper = new ObjectMapper();
+		var genesis = new File("data/blocks/0000000.json");
+
+		assertThat(blockRepository.saveAllInBatch(List.of(mapper.readValue(genesis, Block.class)))).hasSize(1);
+		assertThat(blockRepository.saveAllInBatch(
+				List.of(mapper.readValue(genesis, Block.class), mapper.readValue(genesis, Block.class)))).isEmpty();
+
+		assertThat(blockRepository.numbersInRange(0, 10)).containsExactly(0);
+		assertThat(blockRepository.count()).isEqualTo(1);
+	}
+
+	@Test
+	public void forkWithoutTransactionsDropsTheHistory() throws Exception {
+		var withTx = new ObjectMapper().readValue(
+				getClass().getClassLoader().getResourceAsStream("blocks/127128.json"), Block.class);
+		blockRepository.saveAllInBatch(List.of(withTx));
+		assertThat(historyRepository.findAll()).isNotEmpty();
+
+		var fork = new ObjectMapper().readValue(
+				getClass().getClassLoader().getResourceAsStream("blocks/127128.json"), Block.class);
+		fork.getTransactions().clear();
+		indexer.onBlockSaved(new BlockSavedEvent(fork));
+
+		assertThat(historyRepository.findAll()).isEmpty();
+	}
+
+	private static MutableRoaringBitmap bitmap(int from, int to) {
+		var res = new MutableRoaringBitmap();
+		res.add((long) from, (long) to + 1);
+		return res;
+	}
+
+}
@@ -0,0 +1,155 @@
+package juniter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import juniter.model.Block;
+import juniter.model.event.BlockSavedEvent;
+import juniter.repository.BlockRepository;
+
+/**
+ * What the cache keeps of blocks 5 to 7 of data/blocks : only those buried
+ * under the fork window, until a block of another hash is saved at or below
+ * them
+ */
+public class BlockCacheTest {
+
+	private static final String OTHER = "0000000000000000000000000000000000000000000000000000000000000001";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private BlockRepository repository;
+
+	private BlockCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		repository = mock(BlockRepository.class);
+		when(repository.findTop1ByNumber(anyInt())).thenReturn(Optional.empty());
+		for (int i = 5; i <= 7; i++) {
+			when(repository.findTop1ByNumber(i)).thenReturn(Optional.of(read(i)));
+		}
+		when(repository.findByHash(anyString())).thenReturn(List.of());
+		when(repository.current()).thenReturn(1000);
+
+		cache = new BlockCache();
+		ReflectionTestUtils.setField(cache, "blockRepo", repository);
+		ReflectionTestUtils.setField(cache, "mapper", mapper);
+		ReflectionTestUtils.setField(cache, "txManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(cache, "maxBytes", 1L << 24);
+		ReflectionTestUtils.setField(cache, "maxJsonBytes", 1L << 24);
+		ReflectionTestUtils.setField(cache, "forkWindow", 100);
+		cache.init();
+	}
+
+	@Test
+	public void onlyBuriedBlocksAreCached() {
+		when(repository.current()).thenReturn(105); // 5 is the last one buried
+		cache.block(5);
+		cache.block(5);
+		cache.block(6);
+		cache.block(6);
+
+		verify(repository, times(1)).findTop1ByNumber(5);
+		verify(repository, times(2)).findTop1ByNumber(6);
+		assertThat(cache.json(5)).isPresent();
+		assertThat(cache.json(6)).isEmpty();
+		assertThat(cache.stats().get("blocks").getHits()).isEqualTo(2);
+	}
+
+	@Test
+	public void byHashFromTheCache() throws IOException {
+		var hash = read(5).getHash();
+		cache.block(5);
+
+		assertThat(cache.block(hash)).map(Block::getNumber).contains(5);
+		verify(repository, never()).findByHash(anyString());
+	}
+
+	@Test
+	public void savedAgainKeepsTheCache() throws IOException {
+		cache.block(5);
+		cache.block(6);
+
+		cache.onBlockSaved(new BlockSavedEvent(read(5)));
+		cache.block(5);
+		cache.block(6);
+
+		verify(repository, times(1)).findTop1ByNumber(5);
+		verify(repository, times(1)).findTop1ByNumber(6);
+	}
+
+	@Test
+	public void forkDropsTheBlocksFromThere() throws IOException {
+		final var hash = read(6).getHash();
+		cache.block(5);
+		cache.block(6);
+		cache.json(7);
+
+		var fork = fork(6);
+		doReturn(Optional.of(fork)).when(repository).findTop1ByNumber(6);
+		cache.onBlockSaved(new BlockSavedEvent(fork));
+		cache.block(5);
+		assertThat(cache.block(6)).map(Block::getHash).contains(OTHER);
+		cache.json(7);
+
+		verify(repository, times(1)).findTop1ByNumber(5);
+		verify(repository, times(2)).findTop1ByNumber(6);
+		verify(repository, times(2)).findTop1ByNumber(7);
+
+		// whether or not the removal listener forgot the old hash yet
+		assertThat(cache.block(hash)).isEmpty();
+		verify(repository, times(1)).findByHash(hash);
+	}
+
+	@Test
+	public void uncachedNumberIsTakenAsAFork() throws IOException {
+		cache.block(6);
+
+		cache.onBlockSaved(new BlockSavedEvent(read(5)));
+		cache.block(6);
+
+		verify(repository, times(2)).findTop1ByNumber(6);
+	}
+
+	@Test
+	public void aboveTheHighestChangesNothing() throws IOException {
+		cache.block(5);
+
+		cache.onBlockSaved(new BlockSavedEvent(fork(6)));
+		cache.block(5);
+
+		verify(repository, times(1)).findTop1ByNumber(5);
+	}
+
+	private Block read(int number) throws IOException {
+		return mapper.readValue(Paths.get(String.format("data/blocks/%07d.json", number)).toFile(), Block.class);
+	}
+
+	private Block fork(int number) throws IOException {
+		var json = (ObjectNode) mapper.readTree(Paths.get(String.format("data/blocks/%07d.json", number)).toFile());
+		json.put("hash", OTHER);
+		return mapper.treeToValue(json, Block.class);
+	}
+
+}
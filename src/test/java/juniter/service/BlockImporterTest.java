@@ -0,0 +1,87 @@
+package juniter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+import juniter.model.persistence.tx.TxHistoryEntry.Direction;
+import juniter.repository.BlockRepository;
+import juniter.repository.TxRepository;
+
+/**
+ * Runs the JDBC batch fallback against H2 with the blocks shipped in data/blocks
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ BlockImporter.class, BlockValidator.class, SignatureVerifier.class, TxHistoryIndexer.class })
+public class BlockImporterTest {
+
+	@Autowired
+	private BlockImporter importer;
+
+	@Autowired
+	private BlockRepository blockRepository;
+
+	@Autowired
+	private TxRepository txRepository;
+
+	@Test
+	public void importDataBlocks() throws Exception {
+		assertThat(importer.importDirectory(Paths.get("data/blocks"))).isEqualTo(11);
+
+		assertThat(blockRepository.findTop1ByNumber(10)).isPresent();
+
+		var genesis = blockRepository.findTop1ByNumber(0).get();
+		assertThat(genesis.getIdentities().size()).isEqualTo(59);
+		assertThat(genesis.getJoiners().size()).isEqualTo(59);
+		assertThat(genesis.getCertifications().size()).isEqualTo(551);
+		assertThat(genesis.getParameters()).isNotNull();
+
+		var first = blockRepository.findTop1ByNumber(1).get();
+		assertThat(first.getDividend()).isEqualTo(1000);
+		assertThat(first.getPreviousHash()).isEqualTo(genesis.getHash());
+	}
+
+	@Test
+	public void importTransactions() throws Exception {
+		var block = new ObjectMapper().readValue(getClass().getClassLoader().getResourceAsStream("blocks/127128.json"),
+				Block.class);
+		assertThat(importer.importBlocks(Stream.of(block))).isEqualTo(1);
+
+		var stored = blockRepository.findTop1ByNumber(127128).get();
+		assertThat(stored.getTransactions().size()).isEqualTo(9);
+		assertThat(inputs(stored)).isEqualTo(inputs(block));
+		assertThat(stored.getTime()).isEqualTo(block.getTime());
+
+		// the tx_history index follows the imported block
+		var tx = block.getTransactions().get(0);
+		assertThat(txRepository.transactionsSentBy(tx.getIssuers().get(0))) //
+				.extracting(t -> t.getHash()).contains(tx.getHash());
+		for (var recipient : tx.recipients()) {
+			if (!tx.getIssuers().contains(recipient))
+				assertThat(txRepository.historyByBlocks(recipient, Direction.RECEIVED, 127128, 127128)) //
+						.extracting(t -> t.getHash()).contains(tx.getHash());
+		}
+	}
+
+	private static List<String> inputs(Block block) {
+		return block.getTransactions().stream() //
+				.flatMap(tx -> tx.getInputs().stream()) //
+				.sorted() //
+				.collect(Collectors.toList());
+	}
+
+}
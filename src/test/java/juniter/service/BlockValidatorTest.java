@@ -0,0 +1,115 @@
+package juniter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import juniter.model.Block;
+
+/**
+ * Hashes and chaining of the blocks shipped in data/blocks and of
+ * blocks/127128.json, which carries transactions ; signatures are left to the
+ * environments having libsodium
+ */
+public class BlockValidatorTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private BlockValidator validator;
+
+	@Before
+	public void setUp() {
+		validator = new BlockValidator();
+		ReflectionTestUtils.setField(validator, "enabled", true);
+		ReflectionTestUtils.setField(validator, "signatures", false);
+		validator.init();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		validator.shutdown();
+	}
+
+	@Test
+	public void dataBlocksAreValid() throws Exception {
+		var blocks = dataBlocks();
+		assertThat(blocks).hasSize(11);
+		assertThat(validator.validate(null, blocks)).isEmpty();
+		assertThat(validator.validate(blocks.get(4), blocks.subList(5, 11))).isEmpty();
+	}
+
+	@Test
+	public void tamperedBlockIsRejected() throws Exception {
+		var json = (ObjectNode) mapper.readTree(Paths.get("data/blocks/0000003.json").toFile());
+		json.put("nonce", 1L);
+		var tampered = mapper.treeToValue(json, Block.class);
+
+		assertThat(validator.check(tampered)).hasSize(1).allMatch(e -> e.contains(" hash "));
+	}
+
+	@Test
+	public void blockWithTransactionsIsValid() throws Exception {
+		var block = mapper.readValue(fixture(), Block.class);
+		assertThat(block.getTransactions()).hasSize(9);
+		assertThat(block.getInner_hash())
+				.isEqualTo("2356CB6E1924C2F4F50AA155CB2262E9178ECF4B2F2690CC476E8CE6C92C91B7");
+
+		assertThat(validator.check(block)).isEmpty();
+	}
+
+	@Test
+	public void tamperedTransactionIsRejected() throws Exception {
+		var json = (ObjectNode) mapper.readTree(fixture());
+		var outputs = (ArrayNode) json.get("transactions").get(0).get("outputs");
+		outputs.set(0, outputs.textNode("7201:0:SIG(DsEx1pS33vzYZg4MroyBV9hCw98j1gtHEhwiZ5tK7ech)"));
+		var tampered = mapper.treeToValue(json, Block.class);
+
+		// the hash only covers the inner_hash as it is written, not the transactions
+		assertThat(validator.check(tampered)).hasSize(1).allMatch(e -> e.contains(" inner_hash "));
+	}
+
+	@Test
+	public void brokenChainIsRejected() throws Exception {
+		var blocks = dataBlocks();
+		var holed = new ArrayList<Block>(blocks.subList(0, 3));
+		holed.add(blocks.get(4));
+
+		assertThat(validator.validate(null, holed)).hasSize(2);
+		assertThat(validator.chain(blocks.get(2), blocks.subList(2, 3))).isNotEmpty();
+	}
+
+	private List<Block> dataBlocks() throws IOException {
+		try (var files = Files.list(Paths.get("data/blocks"))) {
+			return files.sorted().map(this::read).collect(Collectors.toList());
+		}
+	}
+
+	private InputStream fixture() {
+		return getClass().getClassLoader().getResourceAsStream("blocks/127128.json");
+	}
+
+	private Block read(Path file) {
+		try {
+			return mapper.readValue(file.toFile(), Block.class);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
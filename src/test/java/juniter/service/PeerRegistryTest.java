@@ -0,0 +1,100 @@
+package juniter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import juniter.utils.Constants;
+
+/**
+ * The power of two choices over nodes whose outcomes are fed through
+ * {@link PeerRegistry#timed}, the default node left out
+ */
+public class PeerRegistryTest {
+
+	private static final String FAST = "https://fast/";
+
+	private static final String SLOW = "https://slow/";
+
+	private static final String FAILING = "https://failing/";
+
+	private static final String LAGGING = "https://lagging/";
+
+	private static final int DRAWS = 3000;
+
+	private PeerRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new PeerRegistry();
+		ReflectionTestUtils.setField(registry, "lag", 5);
+	}
+
+	@Test
+	public void slowAndFailingNodesAreAvoided() {
+		for (int i = 0; i < 20; i++) {
+			registry.timed(FAST, () -> "ok");
+			registry.timed(SLOW, () -> {
+				sleep(20);
+				return "ok";
+			});
+			registry.timed(FAILING, () -> null);
+		}
+		assertThat(registry.ranked()).startsWith(FAST, SLOW);
+
+		var picks = draws(Set.of(Constants.Defaults.NODE));
+		// the cheaper of any two : FAST wins 2 pairs out of 3, SLOW 1, FAILING none
+		assertThat(picks.getOrDefault(FAILING, 0)).isZero();
+		assertThat(picks.get(FAST)).isGreaterThan(picks.get(SLOW));
+		assertThat(picks.get(SLOW)).isPositive();
+	}
+
+	@Test
+	public void laggingNodeIsOnlyTheLastResort() {
+		registry.head(FAST, 200);
+		registry.head(SLOW, 197);
+		registry.head(LAGGING, 100);
+		for (int i = 0; i < 20; i++) {
+			registry.timed(LAGGING, () -> "ok"); // the cheapest, but behind
+		}
+
+		var picks = draws(Set.of(Constants.Defaults.NODE));
+		assertThat(picks.getOrDefault(LAGGING, 0)).isZero();
+		assertThat(picks.keySet()).containsOnly(FAST, SLOW);
+
+		assertThat(registry.pick(Set.of(Constants.Defaults.NODE, FAST, SLOW))).isEqualTo(LAGGING);
+		assertThat(registry.pick(Set.of(Constants.Defaults.NODE, FAST, SLOW, LAGGING)))
+				.isEqualTo(Constants.Defaults.NODE);
+	}
+
+	@Test
+	public void pickCountIsDistinct() {
+		registry.addAll(Set.of(FAST, SLOW));
+
+		assertThat(registry.pick(2)).hasSize(2).doesNotHaveDuplicates();
+		assertThat(registry.pick(5)).hasSize(3).doesNotHaveDuplicates();
+	}
+
+	private Map<String, Integer> draws(Set<String> exclude) {
+		var res = new HashMap<String, Integer>();
+		for (int i = 0; i < DRAWS; i++) {
+			res.merge(registry.pick(exclude), 1, Integer::sum);
+		}
+		return res;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
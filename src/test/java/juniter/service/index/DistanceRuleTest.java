@@ -0,0 +1,71 @@
+package juniter.service.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import juniter.model.compact.Key;
+
+/**
+ * The distance rule over the wot of the genesis : 59 members, stepMax 5,
+ * sentries need 3 certifications issued and received
+ */
+public class DistanceRuleTest {
+
+	private static final String MEMBER = "D9D2zaJoWYWveii1JRYLVK3J4Z7ZH3QczoKrnQeiM6mx";
+
+	private static final String STRANGER = "HnFcSms8jzwngtVomTTnzudZx7SHUQY8sVE1y8yBmULk";
+
+	private WotGraph wot;
+
+	private DistanceRule rule;
+
+	@Before
+	public void setUp() throws IOException {
+		wot = new WotGraph(4096);
+		wot.seed(Fixtures.blocks());
+		rule = new DistanceRule();
+		ReflectionTestUtils.setField(rule, "wot", wot);
+		rule.init();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		rule.shutdown();
+	}
+
+	@Test
+	public void genesisMembersAreWithinReach() {
+		var outcome = rule.outcome(Key.of(MEMBER).id());
+
+		assertThat(outcome.isSentry()).isTrue();
+		assertThat(outcome.reached()).isEqualTo(outcome.sentries()).isEqualTo(47);
+		assertThat(wot.members().getResults()) //
+				.allMatch(m -> !rule.outcome(Key.of(m.getPubkey()).id()).isOutdistanced());
+	}
+
+	@Test
+	public void uncertifiedKeyIsOutdistanced() {
+		var outcome = rule.outcome(Key.of(STRANGER).id());
+
+		assertThat(outcome.isSentry()).isFalse();
+		assertThat(outcome.reached()).isZero();
+		assertThat(outcome.isOutdistanced()).isTrue();
+	}
+
+	@Test
+	public void requirementsCarryTheOutcome() {
+		var requirement = wot.requirements("elois", rule::outcome).getIdentities().get(0);
+
+		assertThat(requirement.getPubkey()).isEqualTo(MEMBER);
+		assertThat(requirement.isOutdistanced()).isFalse();
+		assertThat(requirement.isSentry()).isTrue();
+		assertThat(requirement.getCertifications()).hasSize(21);
+	}
+
+}
@@ -0,0 +1,39 @@
+package juniter.service.index;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+
+/**
+ * The blocks shipped in data/blocks, 0 to 10, shared by the index tests
+ */
+final class Fixtures {
+
+	static final int LAST = 10;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private Fixtures() {
+	}
+
+	static Block read(int number) throws IOException {
+		return mapper.readValue(Paths.get(String.format("data/blocks/%07d.json", number)).toFile(), Block.class);
+	}
+
+	/**
+	 * @return the blocks 0 to {@link #LAST}, in chain order
+	 */
+	static List<Block> blocks() throws IOException {
+		var res = new ArrayList<Block>();
+		for (int i = 0; i <= LAST; i++) {
+			res.add(read(i));
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,118 @@
+package juniter.service.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import juniter.model.Block;
+import juniter.model.compact.Key;
+import juniter.service.index.IdentityIndex.Event;
+
+/**
+ * The identities of the genesis, 59 of them, searched by prefix ; the life of
+ * one of them written in made up blocks above the fixture
+ */
+public class IdentityIndexTest {
+
+	private static final String MEMBER = "D9D2zaJoWYWveii1JRYLVK3J4Z7ZH3QczoKrnQeiM6mx";
+
+	private static final String BUID = "0-E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855";
+
+	private static final String SIG = "Ydnclvw76/JHcKSmU9kl9Ie0ne5/X8NYOqPqbGnufIK3eEPRYYdEYaQh+zffuFhbtIRjv6m/DkVLH5cLy/IyAg==";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private IdentityIndex index;
+
+	private int elois;
+
+	@Before
+	public void setUp() throws IOException {
+		index = new IdentityIndex();
+		for (var block : Fixtures.blocks()) {
+			index.index(block);
+		}
+		elois = Key.of(MEMBER).id();
+	}
+
+	@Test
+	public void searchByPrefix() {
+		assertThat(index.size()).isEqualTo(59);
+		assertThat(index.exact("elois")).isEqualTo(elois);
+		assertThat(index.exact(MEMBER)).isEqualTo(elois);
+		assertThat(index.exact("nobody")).isNegative();
+
+		assertThat(index.search("elo", 10)).containsExactly(elois);
+		assertThat(index.search("D9D2", 10)).containsExactly(elois);
+		assertThat(index.search("E", 10)).extracting(index::uid).containsExactly("elois", "EstienneDunord");
+		assertThat(index.search("e", 1)).hasSize(1);
+		assertThat(index.search("zz", 10)).isEmpty();
+	}
+
+	@Test
+	public void eventsAreRecordedByBlock() throws IOException {
+		index.index(block(11, "actives", MEMBER + ":" + SIG + ":" + BUID + ":" + BUID + ":elois"));
+		index.index(block(12, "leavers", MEMBER + ":" + SIG + ":" + BUID + ":" + BUID + ":elois"));
+		index.index(block(13, "revoked", MEMBER + ":" + SIG));
+		index.index(block(14, "excluded", MEMBER));
+
+		assertThat(index.blocks(elois, Event.IDENTITY)).containsExactly(0);
+		assertThat(index.blocks(elois, Event.JOINED)).containsExactly(0);
+		assertThat(index.last(elois, Event.RENEWED)).isEqualTo(11);
+		assertThat(index.last(elois, Event.LEFT)).isEqualTo(12);
+		assertThat(index.last(elois, Event.REVOKED)).isEqualTo(13);
+		assertThat(index.last(elois, Event.EXCLUDED)).isEqualTo(14);
+		assertThat(index.isRevoked(elois)).isTrue();
+		assertThat(index.sigDate(elois)).isEqualTo(BUID);
+	}
+
+	@Test
+	public void identityWrittenAgainIsMovedInPlace() throws IOException {
+		index.index(block(11, "identities", MEMBER + ":" + SIG + ":" + BUID + ":zelois"));
+
+		assertThat(index.size()).isEqualTo(59);
+		assertThat(index.exact("elois")).isNegative();
+		assertThat(index.search("zel", 10)).containsExactly(elois);
+		assertThat(index.search("E", 10)).extracting(index::uid).containsExactly("EstienneDunord");
+		assertThat(index.blocks(elois, Event.IDENTITY)).containsExactly(0, 11);
+	}
+
+	@Test
+	public void forkIsIndexedAgain() throws IOException {
+		// as the wot does : cleared, the fork appended, sorted once
+		var genesis = (ObjectNode) mapper.readTree(Paths.get("data/blocks/0000000.json").toFile());
+		var identities = genesis.withArray("identities");
+		for (int i = 0; i < identities.size(); i++) {
+			if (identities.get(i).asText().startsWith(MEMBER)) {
+				identities.set(i, identities.textNode(MEMBER + ":" + SIG + ":" + BUID + ":eloisFork"));
+			}
+		}
+		index.clear();
+		index.index(mapper.treeToValue(genesis, Block.class));
+		index.seal();
+
+		assertThat(index.size()).isEqualTo(59);
+		assertThat(index.exact("elois")).isNegative();
+		assertThat(index.exact("eloisFork")).isEqualTo(elois);
+		assertThat(index.search("elo", 10)).containsExactly(elois);
+		assertThat(index.blocks(elois, Event.IDENTITY)).containsExactly(0);
+	}
+
+	/**
+	 * block 1 of the fixture renumbered, with one entry in field
+	 */
+	private Block block(int number, String field, String entry) throws IOException {
+		var json = (ObjectNode) mapper.readTree(Paths.get("data/blocks/0000001.json").toFile());
+		json.put("number", number);
+		json.putArray(field).add(entry);
+		return mapper.treeToValue(json, Block.class);
+	}
+
+}
@@ -0,0 +1,105 @@
+package juniter.service.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import juniter.model.Block;
+import juniter.model.bma.Sources.Source;
+import juniter.model.compact.Key;
+import juniter.model.event.BlockSavedEvent;
+import juniter.model.persistence.tx.TxInput;
+import juniter.model.persistence.tx.TxType;
+
+/**
+ * Dividends and balances of the blocks shipped in data/blocks, block 1 gives
+ * the first dividend to the 59 members of the genesis
+ */
+public class SourcesIndexTest {
+
+	private static final String MEMBER = "D9D2zaJoWYWveii1JRYLVK3J4Z7ZH3QczoKrnQeiM6mx";
+
+	/**
+	 * a key met nowhere else, its first appearance is a tx output
+	 */
+	private static final String FRESH = "Fresh111111111111111111111111111111111111111";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private SourcesIndex index;
+
+	@Before
+	public void setUp() throws IOException {
+		index = new SourcesIndex(100);
+		index.seed(Fixtures.blocks());
+	}
+
+	@Test
+	public void dividendsAreSources() {
+		assertThat(index.head()).isEqualTo(10);
+		assertThat(index.sources(MEMBER)) //
+				.extracting(Source::getNoffset, Source::getAmount, Source::getConditions) //
+				.containsExactly(tuple(1, 1000, "SIG(" + MEMBER + ")"));
+		assertThat(index.isUnspent(new TxInput("1000:0:D:" + MEMBER + ":1"))).isTrue();
+		assertThat(index.isUnspent(new TxInput("1000:0:D:" + MEMBER + ":2"))).isFalse();
+	}
+
+	@Test
+	public void balancesFollowTheDividends() {
+		assertThat(index.balance(MEMBER, 0)).isZero();
+		assertThat(index.balance(MEMBER)).isEqualTo(1000);
+		assertThat(index.monetaryMass(10)).isEqualTo(59000);
+	}
+
+	@Test
+	public void savingTwiceChangesNothing() throws IOException {
+		index.onBlockSaved(new BlockSavedEvent(Fixtures.read(1)));
+
+		assertThat(index.head()).isEqualTo(10);
+		assertThat(index.sources(MEMBER)).hasSize(1);
+	}
+
+	@Test
+	public void forkIsUndone() throws IOException {
+		var json = (ObjectNode) mapper.readTree(Paths.get("data/blocks/0000001.json").toFile());
+		json.putNull("dividend");
+		json.put("hash", "0000000000000000000000000000000000000000000000000000000000000001");
+		index.onBlockSaved(new BlockSavedEvent(mapper.treeToValue(json, Block.class)));
+
+		assertThat(index.head()).isEqualTo(1);
+		assertThat(index.sources(MEMBER)).isEmpty();
+		assertThat(index.balance(MEMBER)).isZero();
+		assertThat(index.monetaryMass(1)).isZero();
+	}
+
+	@Test
+	public void outputToFreshKeyIsCredited() throws IOException {
+		// the transactions of block 127128, as block 11, the first output sent to FRESH
+		var json = (ObjectNode) mapper.readTree(getClass().getClassLoader().getResource("blocks/127128.json"));
+		json.put("number", 11);
+		json.put("previousHash", Fixtures.read(10).getHash());
+		((ArrayNode) json.path("transactions").path(0).path("outputs")).set(0,
+				TextNode.valueOf("7200:0:SIG(" + FRESH + ")"));
+		assertThat(Key.lookup(FRESH)).isNull();
+
+		index.onBlockSaved(new BlockSavedEvent(mapper.treeToValue(json, Block.class)));
+
+		assertThat(index.head()).isEqualTo(11);
+		assertThat(index.sources(FRESH)) //
+				.extracting(Source::getType, Source::getAmount, Source::getConditions) //
+				.containsExactly(tuple(TxType.T, 7200, "SIG(" + FRESH + ")"));
+		assertThat(index.balance(FRESH)).isEqualTo(7200);
+		assertThat(index.balance(FRESH, 10)).isZero();
+	}
+
+}
@@ -0,0 +1,76 @@
+package juniter.service.index;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import juniter.model.bma.WotCerts;
+import juniter.model.event.BlockSavedEvent;
+
+/**
+ * The wot of the blocks shipped in data/blocks, the genesis writes 59
+ * identities and 551 certifications
+ */
+public class WotGraphTest {
+
+	private static final String MEMBER = "D9D2zaJoWYWveii1JRYLVK3J4Z7ZH3QczoKrnQeiM6mx";
+
+	@Test
+	public void genesisMembers() throws IOException {
+		var wot = graph(4096);
+
+		assertThat(wot.head()).isEqualTo(10);
+		assertThat(wot.members().getResults()).hasSize(59);
+		assertThat(wot.identityOf("elois").getPubkey()).isEqualTo(MEMBER);
+		assertThat(wot.identityOf(MEMBER).getUid()).isEqualTo("elois");
+		assertThat(wot.identityOf("nobody")).isNull();
+	}
+
+	@Test
+	public void rowsAndTailAgree() throws IOException {
+		var tail = graph(4096);
+		var rows = graph(1);
+
+		assertThat(tail.certifiersOf(MEMBER).getCertifications()).hasSize(21);
+		assertThat(tail.certifiedBy(MEMBER).getCertifications()).hasSize(9);
+		assertThat(pubkeys(rows.certifiersOf("elois"))).containsExactlyElementsOf(pubkeys(tail.certifiersOf(MEMBER)));
+		assertThat(rows.lookup("elois").getResults().get(0).getSigned()).hasSize(9);
+	}
+
+	@Test
+	public void searchByPrefix() throws IOException {
+		var wot = graph(4096);
+
+		assertThat(wot.identityOf("elo").getPubkey()).isEqualTo(MEMBER);
+		assertThat(wot.identityOf("D9D2").getUid()).isEqualTo("elois");
+		assertThat(wot.identityOf("e")).isNull(); // ambiguous
+		assertThat(wot.lookup("E").getResults()) //
+				.extracting(r -> r.getUids().get(0).getUid()) //
+				.containsExactly("elois", "EstienneDunord");
+		assertThat(wot.lookup("zz").getResults()).isEmpty();
+	}
+
+	@Test
+	public void savingTwiceChangesNothing() throws IOException {
+		var wot = graph(4096);
+		wot.onBlockSaved(new BlockSavedEvent(Fixtures.read(0)));
+
+		assertThat(wot.head()).isEqualTo(10);
+		assertThat(wot.certifiersOf(MEMBER).getCertifications()).hasSize(21);
+	}
+
+	private WotGraph graph(int tail) throws IOException {
+		var wot = new WotGraph(tail);
+		wot.seed(Fixtures.blocks());
+		return wot;
+	}
+
+	private static List<String> pubkeys(WotCerts certs) {
+		return certs.getCertifications().stream().map(WotCerts.Cert::getPubkey).collect(toList());
+	}
+
+}
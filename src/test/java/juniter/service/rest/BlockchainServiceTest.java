@@ -0,0 +1,143 @@
+package juniter.service.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import juniter.model.Block;
+import juniter.repository.BlockRepository;
+import juniter.service.BlockCache;
+
+/**
+ * /blockchain/block/{id} with the blocks shipped in data/blocks : buried ones
+ * from the JSON cache, plain or gzipped, conditional ; the others as they are
+ */
+public class BlockchainServiceTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private BlockRepository repository;
+
+	private MockMvc mvc;
+
+	private Block block;
+
+	@Before
+	public void setUp() throws IOException {
+		block = mapper.readValue(Paths.get("data/blocks/0000005.json").toFile(), Block.class);
+		repository = mock(BlockRepository.class);
+		when(repository.findTop1ByNumber(anyInt())).thenReturn(Optional.empty());
+		when(repository.findTop1ByNumber(5)).thenReturn(Optional.of(block));
+
+		var cache = new BlockCache();
+		ReflectionTestUtils.setField(cache, "blockRepo", repository);
+		ReflectionTestUtils.setField(cache, "mapper", mapper);
+		ReflectionTestUtils.setField(cache, "txManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(cache, "maxBytes", 1L << 24);
+		ReflectionTestUtils.setField(cache, "maxJsonBytes", 1L << 24);
+		ReflectionTestUtils.setField(cache, "forkWindow", 100);
+		cache.init();
+
+		var service = new BlockchainService();
+		ReflectionTestUtils.setField(service, "repository", repository);
+		ReflectionTestUtils.setField(service, "blockCache", cache);
+		mvc = MockMvcBuilders.standaloneSetup(service).build();
+	}
+
+	@Test
+	public void buriedBlockIsPlainWithoutGzip() throws Exception {
+		when(repository.current()).thenReturn(1000);
+
+		for (var acceptEncoding : new String[] { null, "deflate", "gzip;q=0", "gzip;q=0, *", "br, gzip; q=0.0" }) {
+			var request = get("/blockchain/block/5");
+			if (acceptEncoding != null) {
+				request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+			}
+			var response = mvc.perform(request) //
+					.andExpect(status().isOk()) //
+					.andExpect(header().string(HttpHeaders.ETAG, "\"" + block.getHash() + "\"")) //
+					.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")) //
+					.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING)) //
+					.andReturn().getResponse();
+			assertThat(mapper.readTree(response.getContentAsByteArray())).isEqualTo(mapper.valueToTree(block));
+		}
+	}
+
+	@Test
+	public void buriedBlockIsGzipped() throws Exception {
+		when(repository.current()).thenReturn(1000);
+
+		for (var acceptEncoding : new String[] { "gzip", "deflate, gzip;q=0.5", "*" }) {
+			var response = mvc.perform(get("/blockchain/block/5").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)) //
+					.andExpect(status().isOk()) //
+					.andExpect(header().string(HttpHeaders.ETAG, "\"" + block.getHash() + "-gzip\"")) //
+					.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip")) //
+					.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)) //
+					.andReturn().getResponse();
+			try (var gzip = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+				assertThat(mapper.readTree(gzip)).isEqualTo(mapper.valueToTree(block));
+			}
+		}
+	}
+
+	@Test
+	public void buriedBlockIsNotModified() throws Exception {
+		when(repository.current()).thenReturn(1000);
+		final var etag = "\"" + block.getHash() + "\"";
+
+		for (var ifNoneMatch : new String[] { etag, "*", "\"other\", " + etag, "W/" + etag }) {
+			mvc.perform(get("/blockchain/block/5").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)) //
+					.andExpect(status().isNotModified()) //
+					.andExpect(header().string(HttpHeaders.ETAG, etag));
+		}
+
+		// the plain document's tag does not match the gzipped one
+		mvc.perform(get("/blockchain/block/5").header(HttpHeaders.IF_NONE_MATCH, etag)
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip")) //
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	public void badRangeIsRejected() throws Exception {
+		for (var path : new String[] { "/blockchain/blocks/0/5", "/blockchain/blocks/-1/5",
+				"/blockchain/blocks/10/-1" }) {
+			mvc.perform(get(path)).andExpect(status().isBadRequest());
+		}
+	}
+
+	@Test
+	public void nearHeadBlockIsNotCached() throws Exception {
+		when(repository.current()).thenReturn(10);
+
+		mvc.perform(get("/blockchain/block/5").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+				.header(HttpHeaders.IF_NONE_MATCH, "*")) //
+				.andExpect(status().isOk()) //
+				.andExpect(header().doesNotExist(HttpHeaders.ETAG)) //
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING)) //
+				.andExpect(jsonPath("$.number", is(5))) //
+				.andExpect(jsonPath("$.hash", is(block.getHash())));
+	}
+
+}